@@ -0,0 +1,105 @@
+package me.clicker.economy;
+
+import me.clicker.economy.config.Config;
+import me.clicker.economy.storage.AccountCache;
+import me.clicker.economy.storage.Ledger;
+import me.clicker.economy.storage.SeededStorage;
+import me.clicker.economy.storage.Storage;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The public API as plugins call it: {@link EconomyImpl} over the account cache and a seeded storage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class EconomyBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int accounts;
+
+    @Param({"sqlite", "log"})
+    public String storageType;
+
+    @Param({"interval", "sync"})
+    public String flushMode;
+
+    private Path dir;
+    private Storage storage;
+    private Ledger ledger;
+    private AccountCache cache;
+    private EconomyImpl economy;
+
+    /**
+     * How far down the leaderboard {@link #getTopRange} reads, as a fraction of all accounts.
+     */
+    @State(Scope.Benchmark)
+    public static class Page {
+        @Param({"0", "0.5", "0.99"})
+        public double depth;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        dir = SeededStorage.createDirectory();
+        Config.cache_flush_mode = flushMode;
+
+        storage = SeededStorage.open(dir, storageType, accounts);
+        ledger = new Ledger(dir.resolve("ledger"), Config.ledger_enabled, Config.ledger_segment_size_mb, SeededStorage.LOGGER);
+        ledger.start();
+        cache = new AccountCache(storage, ledger, SeededStorage.LOGGER);
+        cache.start();
+        economy = new EconomyImpl(SeededStorage.LOGGER, cache);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        economy.shutdown();
+        cache.shutdown();
+        ledger.shutdown();
+        storage.shutdown();
+        SeededStorage.delete(dir);
+    }
+
+    private int account() {
+        return ThreadLocalRandom.current().nextInt(accounts);
+    }
+
+    @Benchmark
+    public double getBalanceByUuid() {
+        return economy.getBalance(SeededStorage.uuid(account()));
+    }
+
+    @Benchmark
+    public double getBalanceByName() {
+        return economy.getBalance(SeededStorage.name(account()));
+    }
+
+    @Benchmark
+    public EconomyResponse deposit() {
+        return economy.deposit(SeededStorage.uuid(account()), 0.01);
+    }
+
+    @Benchmark
+    public EconomyResponse withdraw() {
+        return economy.withdraw(SeededStorage.uuid(account()), 0.01);
+    }
+
+    @Benchmark
+    public EconomyResponse transfer() {
+        return economy.transfer(SeededStorage.uuid(account()), SeededStorage.uuid(account()), 0.01);
+    }
+
+    @Benchmark
+    public List<LeaderboardEntry> getTopRange(Page page) {
+        var from = (int) (accounts * page.depth);
+        return economy.getTopRange(from, from + 10);
+    }
+}
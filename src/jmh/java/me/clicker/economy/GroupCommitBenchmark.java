@@ -0,0 +1,88 @@
+package me.clicker.economy;
+
+import me.clicker.economy.config.Config;
+import me.clicker.economy.storage.AccountCache;
+import me.clicker.economy.storage.Ledger;
+import me.clicker.economy.storage.SeededStorage;
+import me.clicker.economy.storage.Storage;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfers in {@code sync} flush mode, committed one transaction each ({@code cache.group_commit_window_ms}
+ * of 0) or grouped with whatever else arrives within the window.
+ *
+ * <p>Grouping only pays off when several callers wait at once, so each variant runs at several thread
+ * counts. A window of 0 is the per-operation baseline at every count.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class GroupCommitBenchmark {
+    @Param({"100000"})
+    public int accounts;
+
+    @Param({"sqlite", "log"})
+    public String storageType;
+
+    @Param({"0", "2", "5"})
+    public long groupCommitWindowMs;
+
+    private Path dir;
+    private Storage storage;
+    private Ledger ledger;
+    private AccountCache cache;
+    private EconomyImpl economy;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        dir = SeededStorage.createDirectory();
+        Config.cache_flush_mode = "sync";
+        Config.cache_group_commit_window_ms = groupCommitWindowMs;
+
+        storage = SeededStorage.open(dir, storageType, accounts);
+        ledger = new Ledger(dir.resolve("ledger"), Config.ledger_enabled, Config.ledger_segment_size_mb, SeededStorage.LOGGER);
+        ledger.start();
+        cache = new AccountCache(storage, ledger, SeededStorage.LOGGER);
+        cache.start();
+        economy = new EconomyImpl(SeededStorage.LOGGER, cache);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        economy.shutdown();
+        cache.shutdown();
+        ledger.shutdown();
+        storage.shutdown();
+        SeededStorage.delete(dir);
+    }
+
+    private EconomyResponse transfer() {
+        var random = ThreadLocalRandom.current();
+        return economy.transfer(SeededStorage.uuid(random.nextInt(accounts)), SeededStorage.uuid(random.nextInt(accounts)), 0.01);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public EconomyResponse transfer1Thread() {
+        return transfer();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public EconomyResponse transfer4Threads() {
+        return transfer();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public EconomyResponse transfer16Threads() {
+        return transfer();
+    }
+}
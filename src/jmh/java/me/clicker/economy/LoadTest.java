@@ -0,0 +1,379 @@
+package me.clicker.economy;
+
+import me.clicker.economy.config.Config;
+import me.clicker.economy.stats.LatencyHistogram;
+import me.clicker.economy.stats.Operation;
+import me.clicker.economy.stats.Stats;
+import me.clicker.economy.storage.AccountCache;
+import me.clicker.economy.storage.Ledger;
+import me.clicker.economy.storage.SeededStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Offline load test: drives a mix of API calls from several threads through {@link EconomyImpl}, the account
+ * cache and a storage seeded with a synthetic population, then prints throughput, latency percentiles and
+ * how much the data directory grew.
+ *
+ * <p>Options, each given as {@code --name=value}:</p>
+ * <ul>
+ *     <li>{@code accounts} - seeded accounts, 1000000 by default</li>
+ *     <li>{@code storage} - {@code sqlite} or {@code log}</li>
+ *     <li>{@code flush} - cache flush mode, {@code interval}, {@code ops} or {@code sync}</li>
+ *     <li>{@code threads} - concurrent callers, 8 by default</li>
+ *     <li>{@code duration}, {@code warmup} - measured and discarded seconds</li>
+ *     <li>{@code mix} - relative weights, such as {@code getBalance=50,deposit=15,withdraw=15,transfer=15,getTop=5}</li>
+ *     <li>{@code online} - accounts loaded as online players, and {@code online-share}, the fraction of calls
+ *     aimed at them; the rest go to any account</li>
+ *     <li>{@code dir} - keeps the data directory, and reuses the population already in it; a temporary one is
+ *     deleted otherwise</li>
+ *     <li>{@code seed-only} - only generates the population in {@code dir}</li>
+ * </ul>
+ */
+public final class LoadTest {
+    private enum Call {
+        GET_BALANCE("getBalance"),
+        DEPOSIT("deposit"),
+        WITHDRAW("withdraw"),
+        TRANSFER("transfer"),
+        GET_TOP("getTop");
+
+        private final String label;
+
+        Call(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final Call[] CALLS = Call.values();
+    private static final int PAGE_SIZE = 10;
+
+    private final int accounts;
+    private final int online;
+    private final double onlineShare;
+    private final int[] weights = new int[CALLS.length];
+    private final int totalWeight;
+    private final LatencyHistogram[] latencies = new LatencyHistogram[CALLS.length];
+    private final LongAdder[] declined = new LongAdder[CALLS.length];
+    private final LongAdder[] errors = new LongAdder[CALLS.length];
+    private final EconomyImpl economy;
+
+    private volatile boolean running = true;
+
+    private LoadTest(Map<String, String> options, EconomyImpl economy) {
+        this.accounts = Integer.parseInt(options.get("accounts"));
+        this.online = Math.min(accounts, Integer.parseInt(options.get("online")));
+        this.onlineShare = Double.parseDouble(options.get("online-share"));
+        this.economy = economy;
+
+        for (var entry : options.get("mix").split(",")) {
+            var parts = entry.split("=");
+            weights[call(parts[0].trim()).ordinal()] = Integer.parseInt(parts[1].trim());
+        }
+
+        var total = 0;
+
+        for (var i = 0; i < CALLS.length; i++) {
+            total += weights[i];
+            latencies[i] = new LatencyHistogram();
+            declined[i] = new LongAdder();
+            errors[i] = new LongAdder();
+        }
+
+        if (total <= 0) {
+            throw new IllegalArgumentException("mix has no calls");
+        }
+
+        this.totalWeight = total;
+    }
+
+    public static void main(String[] args) throws Exception {
+        var options = new HashMap<>(Map.of(
+            "accounts", "1000000",
+            "storage", "sqlite",
+            "flush", "interval",
+            "threads", "8",
+            "duration", "60",
+            "warmup", "10",
+            "mix", "getBalance=50,deposit=15,withdraw=15,transfer=15,getTop=5",
+            "online", "200",
+            "online-share", "0.8"
+        ));
+
+        for (var arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+
+            var separator = arg.indexOf('=');
+            options.put(separator < 0 ? arg.substring(2) : arg.substring(2, separator), separator < 0 ? "true" : arg.substring(separator + 1));
+        }
+
+        var accounts = Integer.parseInt(options.get("accounts"));
+        var keep = options.containsKey("dir");
+        var dir = keep ? Path.of(options.get("dir")) : Files.createTempDirectory("economy-load");
+        Files.createDirectories(dir);
+        Config.load(dir);
+        Config.cache_flush_mode = options.get("flush");
+
+        var seedStart = System.nanoTime();
+        var storage = SeededStorage.open(dir, options.get("storage"), accounts);
+        System.out.println("Population: " + accounts + " accounts in " + dir + ", ready in " + Stats.formatDuration(System.nanoTime() - seedStart));
+
+        if (options.containsKey("seed-only")) {
+            storage.shutdown();
+            return;
+        }
+
+        var ledger = new Ledger(dir.resolve("ledger"), Config.ledger_enabled, Config.ledger_segment_size_mb, SeededStorage.LOGGER);
+        ledger.start();
+        var cache = new AccountCache(storage, ledger, SeededStorage.LOGGER);
+        cache.start();
+        var economy = new EconomyImpl(SeededStorage.LOGGER, cache);
+        var before = sizes(dir);
+
+        try {
+            new LoadTest(options, economy).run(cache, Integer.parseInt(options.get("threads")), Long.parseLong(options.get("warmup")), Long.parseLong(options.get("duration")));
+        } finally {
+            economy.shutdown();
+            cache.shutdown();
+            ledger.shutdown();
+            storage.shutdown();
+        }
+
+        printGrowth(before, sizes(dir));
+
+        if (!keep) {
+            SeededStorage.delete(dir);
+        }
+    }
+
+    private void run(AccountCache cache, int threads, long warmupSeconds, long durationSeconds) throws Exception {
+        for (var i = 0; i < online; i++) {
+            cache.join(SeededStorage.uuid(i), SeededStorage.name(i), 0);
+        }
+
+        var workers = new ArrayList<Thread>(threads);
+
+        for (var i = 0; i < threads; i++) {
+            var worker = new Thread(this::work, "LoadTest-" + i);
+            worker.start();
+            workers.add(worker);
+        }
+
+        Thread.sleep(warmupSeconds * 1000);
+
+        var calls = snapshots();
+        var storageOps = storageSnapshots();
+        var start = System.nanoTime();
+        var deadline = start + durationSeconds * 1_000_000_000L;
+        var last = calls;
+        var lastAt = start;
+
+        while (System.nanoTime() < deadline) {
+            Thread.sleep(Math.min(10_000, Math.max(1, (deadline - System.nanoTime()) / 1_000_000)));
+
+            var now = System.nanoTime();
+            var current = snapshots();
+            var ops = 0L;
+
+            for (var i = 0; i < CALLS.length; i++) {
+                ops += current[i].minus(last[i]).count();
+            }
+
+            System.out.println("  " + Stats.formatDuration(now - start) + ": " + Stats.formatRate(ops / ((now - lastAt) / 1e9)) + " ops/s");
+            last = current;
+            lastAt = now;
+        }
+
+        running = false;
+
+        for (var worker : workers) {
+            worker.join();
+        }
+
+        var seconds = (System.nanoTime() - start) / 1e9;
+        var end = snapshots();
+
+        System.out.println();
+        System.out.printf(Locale.US, "%-16s %10s %10s %9s %9s %9s %9s %9s %9s %7s%n", "call", "ops", "ops/s", "p50", "p90", "p99", "p99.9", "max", "declined", "errors");
+
+        var total = 0L;
+
+        for (var i = 0; i < CALLS.length; i++) {
+            var interval = end[i].minus(calls[i]);
+            total += interval.count();
+
+            if (weights[i] > 0) {
+                printRow(CALLS[i].label, interval, seconds, String.valueOf(declined[i].sum()), String.valueOf(errors[i].sum()));
+            }
+        }
+
+        System.out.printf(Locale.US, "%-16s %10d %10s%n", "total", total, Stats.formatRate(total / seconds));
+        System.out.println();
+        System.out.printf(Locale.US, "%-16s %10s %10s %9s %9s %9s %9s %9s%n", "storage", "ops", "ops/s", "p50", "p90", "p99", "p99.9", "max");
+
+        for (var operation : Operation.values()) {
+            var interval = Stats.snapshot(operation).minus(storageOps.get(operation));
+
+            if (interval.count() > 0) {
+                printRow(operation.label(), interval, seconds, "", "");
+            }
+        }
+    }
+
+    private void work() {
+        var random = ThreadLocalRandom.current();
+
+        while (running) {
+            var call = pick(random);
+            var start = System.nanoTime();
+            EconomyResponse response = null;
+
+            try {
+                switch (call) {
+                    case GET_BALANCE -> economy.getBalance(account(random));
+                    case DEPOSIT -> response = economy.deposit(account(random), amount(random));
+                    case WITHDRAW -> response = economy.withdraw(account(random), amount(random));
+                    case TRANSFER -> response = economy.transfer(account(random), account(random), amount(random));
+                    case GET_TOP -> {
+                        // Mostly the first pages, as players run /baltop, with the odd deep page.
+                        var pages = Math.max(1, accounts / PAGE_SIZE);
+                        var from = (int) (pages * Math.pow(random.nextDouble(), 4)) * PAGE_SIZE;
+                        economy.getTopRange(from, from + PAGE_SIZE);
+                    }
+                }
+            } catch (Exception e) {
+                errors[call.ordinal()].increment();
+            }
+
+            latencies[call.ordinal()].record(System.nanoTime() - start);
+
+            if (response != null && !response.isSuccess()) {
+                ("Internal error.".equals(response.errorMessage()) ? errors : declined)[call.ordinal()].increment();
+            }
+        }
+    }
+
+    private Call pick(ThreadLocalRandom random) {
+        var n = random.nextInt(totalWeight);
+
+        for (var i = 0; i < CALLS.length; i++) {
+            n -= weights[i];
+
+            if (n < 0) {
+                return CALLS[i];
+            }
+        }
+
+        return CALLS[CALLS.length - 1];
+    }
+
+    private UUID account(ThreadLocalRandom random) {
+        return SeededStorage.uuid(online > 0 && random.nextDouble() < onlineShare ? random.nextInt(online) : random.nextInt(accounts));
+    }
+
+    private static double amount(ThreadLocalRandom random) {
+        return Money.toMajor(1 + random.nextLong(Money.toMinor(100)));
+    }
+
+    private static Call call(String label) {
+        for (var call : CALLS) {
+            if (call.label.equalsIgnoreCase(label)) {
+                return call;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown call in mix: " + label);
+    }
+
+    private LatencyHistogram.Snapshot[] snapshots() {
+        var snapshots = new LatencyHistogram.Snapshot[CALLS.length];
+
+        for (var i = 0; i < CALLS.length; i++) {
+            snapshots[i] = latencies[i].snapshot();
+        }
+
+        return snapshots;
+    }
+
+    private static Map<Operation, LatencyHistogram.Snapshot> storageSnapshots() {
+        var snapshots = new HashMap<Operation, LatencyHistogram.Snapshot>();
+
+        for (var operation : Operation.values()) {
+            snapshots.put(operation, Stats.snapshot(operation));
+        }
+
+        return snapshots;
+    }
+
+    private static void printRow(String label, LatencyHistogram.Snapshot interval, double seconds, String declined, String errors) {
+        System.out.printf(Locale.US, "%-16s %10d %10s %9s %9s %9s %9s %9s %9s %7s%n", label, interval.count(), Stats.formatRate(interval.count() / seconds),
+            Stats.formatDuration(interval.percentile(50)), Stats.formatDuration(interval.percentile(90)), Stats.formatDuration(interval.percentile(99)),
+            Stats.formatDuration(interval.percentile(99.9)), Stats.formatDuration(interval.max()), declined, errors);
+    }
+
+    /**
+     * Gets the size of everything in the data directory, by top-level entry.
+     */
+    private static Map<String, Long> sizes(Path dir) throws IOException {
+        var sizes = new TreeMap<String, Long>();
+
+        try (var entries = Files.list(dir)) {
+            for (var entry : entries.toList()) {
+                try (var files = Files.walk(entry)) {
+                    sizes.put(entry.getFileName().toString(), files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum());
+                }
+            }
+        }
+
+        return sizes;
+    }
+
+    private static void printGrowth(Map<String, Long> before, Map<String, Long> after) {
+        var names = new TreeMap<String, Long>(before);
+        after.keySet().forEach(name -> names.putIfAbsent(name, 0L));
+
+        System.out.println();
+        System.out.printf(Locale.US, "%-24s %12s %12s %12s%n", "data", "before", "after", "growth");
+
+        var totalBefore = 0L;
+        var totalAfter = 0L;
+
+        for (var name : names.keySet()) {
+            var from = before.getOrDefault(name, 0L);
+            var to = after.getOrDefault(name, 0L);
+            totalBefore += from;
+            totalAfter += to;
+            System.out.printf(Locale.US, "%-24s %12s %12s %12s%n", name, bytes(from), bytes(to), (to >= from ? "+" : "-") + bytes(Math.abs(to - from)));
+        }
+
+        System.out.printf(Locale.US, "%-24s %12s %12s %12s%n", "total", bytes(totalBefore), bytes(totalAfter), (totalAfter >= totalBefore ? "+" : "-") + bytes(Math.abs(totalAfter - totalBefore)));
+    }
+
+    private static String bytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+
+        if (bytes < 1024 * 1024) {
+            return String.format(Locale.US, "%.1f KB", bytes / 1024.0);
+        }
+
+        if (bytes < 1024L * 1024 * 1024) {
+            return String.format(Locale.US, "%.1f MB", bytes / (1024.0 * 1024));
+        }
+
+        return String.format(Locale.US, "%.2f GB", bytes / (1024.0 * 1024 * 1024));
+    }
+}
@@ -0,0 +1,52 @@
+package me.clicker.economy;
+
+import com.hypixel.hytale.server.core.Message;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building chat messages from messages.yml text, parsed on every send with {@link ChatColor#toMessage} or
+ * rendered from a {@link MessageTemplate} compiled once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageBenchmark {
+    public String text = "&c{amount} &ahas been sent to &e{player}";
+    public String staticText = "&cAn internal error occurred while attempting to perform this command.";
+    public String player = "Player42";
+    public String amount = "$1,234.56";
+
+    private MessageTemplate template;
+    private MessageTemplate staticTemplate;
+
+    @Setup
+    public void setup() {
+        template = MessageTemplate.compile(text);
+        staticTemplate = MessageTemplate.compile(staticText);
+    }
+
+    @Benchmark
+    public Message toMessage() {
+        return ChatColor.toMessage(text.replace("{amount}", amount).replace("{player}", player));
+    }
+
+    @Benchmark
+    public Message render() {
+        return template.render(Placeholder.AMOUNT, amount, Placeholder.PLAYER, player);
+    }
+
+    @Benchmark
+    public Message toMessageStatic() {
+        return ChatColor.toMessage(staticText);
+    }
+
+    @Benchmark
+    public Message renderStatic() {
+        return staticTemplate.render();
+    }
+}
@@ -0,0 +1,70 @@
+package me.clicker.economy;
+
+import me.clicker.economy.config.Config;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting and parsing amounts, as done for every message and command argument.
+ *
+ * <p>The off-grid and exponent cases take the {@link String#format} and {@link Double#parseDouble} based
+ * paths that the direct ones replaced, so they double as a baseline.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MoneyBenchmark {
+    public double amount = 1_234_567.89;
+    public double offGridAmount = 1_234_567.891;
+    public String plain = "1,234.56";
+    public String suffixed = "$ 2.5k";
+    public String exponent = "1.23456e3";
+
+    private MoneyFormat format;
+
+    @Setup
+    public void setup() {
+        Config.currency_symbol = "$";
+        Config.currency_fraction_digits = 2;
+        format = new MoneyFormat(Config.currency_symbol, Money.fractionDigits());
+    }
+
+    @Benchmark
+    public String formatFull() {
+        return format.format(amount, false);
+    }
+
+    @Benchmark
+    public String formatCompact() {
+        return format.format(amount, true);
+    }
+
+    @Benchmark
+    public String formatOffGrid() {
+        return format.format(offGridAmount, false);
+    }
+
+    @Benchmark
+    public double parsePlain() {
+        return MoneyParser.parse(plain);
+    }
+
+    @Benchmark
+    public double parseSuffixed() {
+        return MoneyParser.parse(suffixed);
+    }
+
+    @Benchmark
+    public double parseExponent() {
+        return MoneyParser.parse(exponent);
+    }
+
+    @Benchmark
+    public long parseMinor() {
+        return MoneyParser.parseMinor(plain);
+    }
+}
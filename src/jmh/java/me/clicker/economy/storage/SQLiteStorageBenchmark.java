@@ -0,0 +1,98 @@
+package me.clicker.economy.storage;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Raw {@link SQLiteStorage} calls, without the account cache in front, against a seeded database file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SQLiteStorageBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int accounts;
+
+    private Path dir;
+    private SQLiteStorage storage;
+
+    /**
+     * How far down the leaderboard {@link #getTop} reads, as a fraction of all accounts.
+     */
+    @State(Scope.Benchmark)
+    public static class Page {
+        @Param({"0", "0.5", "0.99"})
+        public double depth;
+    }
+
+    /**
+     * How many rows {@link #saveAll}, {@link #getRowsAfter} and {@link #adjustAfter} write or read per call.
+     */
+    @State(Scope.Benchmark)
+    public static class Batch {
+        @Param({"1", "100", "1000"})
+        public int size;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        dir = SeededStorage.createDirectory();
+        storage = (SQLiteStorage) SeededStorage.open(dir, "sqlite", accounts);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        storage.shutdown();
+        SeededStorage.delete(dir);
+    }
+
+    private int account() {
+        return ThreadLocalRandom.current().nextInt(accounts);
+    }
+
+    @Benchmark
+    public Storage.Row getRowByUuid() throws Exception {
+        return storage.getRow(SeededStorage.uuid(account()));
+    }
+
+    @Benchmark
+    public Storage.Row getRowByName() throws Exception {
+        return storage.getRow(SeededStorage.name(account()));
+    }
+
+    @Benchmark
+    public void saveAll(Batch batch) throws Exception {
+        var random = ThreadLocalRandom.current();
+        var rows = new ArrayList<Storage.Row>(batch.size);
+
+        for (var i = 0; i < batch.size; i++) {
+            var index = account();
+            rows.add(new Storage.Row(SeededStorage.uuid(index), SeededStorage.name(index), random.nextLong(1_000_000)));
+        }
+
+        storage.saveAll(rows);
+    }
+
+    @Benchmark
+    public List<Storage.Row> getRowsAfter(Batch batch) throws Exception {
+        return storage.getRowsAfter(SeededStorage.uuid(account()), batch.size);
+    }
+
+    @Benchmark
+    public List<Storage.Row> adjustAfter(Batch batch) throws Exception {
+        return storage.adjustAfter(SeededStorage.uuid(account()), batch.size, Storage.Adjustment.GIVE, 1);
+    }
+
+    @Benchmark
+    public List<Storage.Row> getTop(Page page) throws Exception {
+        return storage.getTop(10, (int) (accounts * page.depth));
+    }
+}
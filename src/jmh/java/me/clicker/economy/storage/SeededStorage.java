@@ -0,0 +1,136 @@
+package me.clicker.economy.storage;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import me.clicker.economy.Money;
+import me.clicker.economy.config.Config;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Storages seeded with a synthetic population for the benchmarks and the load test.
+ *
+ * <p>Account {@code i} has a fixed UUID, the name {@code Player<i>} and a Pareto-distributed balance, so a
+ * few accounts hold most of the money as on a live server. Seeding a million SQLite rows takes a while, so
+ * each population is built once in the system temp directory and copied for every trial.</p>
+ */
+public final class SeededStorage {
+    public static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+    private static final int CHUNK = 10_000;
+
+    private SeededStorage() {}
+
+    public static UUID uuid(int index) {
+        return new UUID(0xEC0_0000_0000_0000L, index);
+    }
+
+    public static String name(int index) {
+        return "Player" + index;
+    }
+
+    /**
+     * Gets the seeded balance of account {@code index}, at least 100 and at most a billion. The shape
+     * parameter of 1.16 puts 80% of the money in 20% of the accounts.
+     */
+    public static long balance(int index) {
+        var u = new SplittableRandom(index).nextDouble();
+        return Money.toMinor(Math.min(1_000_000_000.0, Math.floor(100 * Math.pow(1 - u, -1 / 1.16))));
+    }
+
+    /**
+     * Creates an empty data directory and loads the bundled default config from it. The benchmark may
+     * then override {@link Config} fields before opening anything.
+     */
+    public static Path createDirectory() throws IOException {
+        var dir = Files.createTempDirectory("economy-bench");
+        Config.load(dir);
+        return dir;
+    }
+
+    /**
+     * Opens and initializes a storage of the given type in {@code dir}, holding {@code accounts} seeded
+     * accounts. A storage already in {@code dir} is reopened as it is, without seeding.
+     */
+    public static Storage open(Path dir, String type, int accounts) throws Exception {
+        return switch (type) {
+            case "sqlite" -> {
+                var file = dir.resolve("economy.db");
+
+                if (!Files.exists(file)) {
+                    Files.copy(sqliteTemplate(accounts), file);
+                }
+
+                var storage = new SQLiteStorage(file, LOGGER);
+                storage.init();
+                yield storage;
+            }
+            case "log" -> {
+                var path = dir.resolve("economy-log");
+                var existing = Files.exists(path);
+                var storage = new LogStorage(path, Config.storage_log_compact_mb * 1024 * 1024, LOGGER);
+                storage.init();
+
+                if (!existing) {
+                    seed(storage, accounts);
+                }
+
+                yield storage;
+            }
+            default -> throw new IllegalArgumentException("Unknown storage type: " + type);
+        };
+    }
+
+    public static void delete(Path dir) throws IOException {
+        if (dir == null || !Files.exists(dir)) {
+            return;
+        }
+
+        try (var paths = Files.walk(dir)) {
+            for (var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private static synchronized Path sqliteTemplate(int accounts) throws Exception {
+        var template = Path.of(System.getProperty("java.io.tmpdir"), "economy-bench-" + accounts + ".db");
+
+        if (Files.exists(template)) {
+            return template;
+        }
+
+        var partial = template.resolveSibling(template.getFileName() + ".partial");
+        Files.deleteIfExists(partial);
+
+        var storage = new SQLiteStorage(partial, LOGGER);
+        storage.init();
+
+        try {
+            seed(storage, accounts);
+        } finally {
+            storage.shutdown();
+        }
+
+        Files.move(partial, template, StandardCopyOption.ATOMIC_MOVE);
+        return template;
+    }
+
+    private static void seed(Storage storage, int accounts) throws Exception {
+        var rows = new ArrayList<Storage.Row>(CHUNK);
+
+        for (var i = 0; i < accounts; i++) {
+            rows.add(new Storage.Row(uuid(i), name(i), balance(i)));
+
+            if (rows.size() == CHUNK || i == accounts - 1) {
+                storage.saveAll(rows);
+                rows.clear();
+            }
+        }
+    }
+}
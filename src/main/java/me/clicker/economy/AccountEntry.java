@@ -0,0 +1,12 @@
+package me.clicker.economy;
+
+import java.util.UUID;
+
+/**
+ * Represents one account visited by {@link Economy#forEachAccount} and related methods.
+ *
+ * @param playerUUID The player's UUID.
+ * @param playerName The player's last known name (empty if unknown).
+ * @param balance    The player's balance when the account was read.
+ */
+public record AccountEntry(UUID playerUUID, String playerName, double balance) {}
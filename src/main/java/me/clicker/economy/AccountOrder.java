@@ -0,0 +1,16 @@
+package me.clicker.economy;
+
+/**
+ * The order in which {@link Economy#forEachAccount} and related methods walk accounts.
+ */
+public enum AccountOrder {
+    /**
+     * Highest balance first, as on the leaderboard, with ties broken by UUID.
+     */
+    BALANCE,
+
+    /**
+     * By UUID. An account that exists for the whole walk is visited exactly once, however balances change.
+     */
+    UUID
+}
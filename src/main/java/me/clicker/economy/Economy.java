@@ -1,179 +1,316 @@
-package me.clicker.economy;
-
-import com.hypixel.hytale.server.core.universe.PlayerRef;
-
-import java.util.UUID;
-
-/**
- * The main economy API
- *
- */
-public interface Economy {
-    /**
-     * Gets the active Economy API instance.
-     *
-     * <p>This is a convenience method so other plugins/classes can do:</p>
-     * <pre>{@code
-     * Economy eco = Economy.get();
-     * }</pre>
-     *
-     * @return the active {@link Economy} instance
-     * @throws IllegalStateException if the economy system is not initialized yet
-     */
-    static Economy get() {
-        return null;
-    }
-
-    /**
-     * Gets the currency symbol used by the economy system.
-     *
-     * @return currency symbol (example: "$")
-     */
-    public String getCurrencySymbol();
-
-    /**
-     * Formats an amount into a human-readable currency string.
-     *
-     * <p>The returned string includes the currency symbol (if configured), and supports two modes:</p>
-     * <ul>
-     *   <li><b>compact=true</b>: uses suffixes (k/m/b/t)</li>
-     *   <li><b>compact=false</b>: uses comma grouping (1,000 / 2,500,000)</li>
-     * </ul>
-     *
-     * <p>Examples:</p>
-     * <ul>
-     *   <li>compact=true  -> "$1k", "$2.5m", "-$10b"</li>
-     *   <li>compact=false -> "$1,000", "$2,500,000", "-$10,000,000,000"</li>
-     * </ul>
-     *
-     * @param amount  the amount to format
-     * @param compact if true, uses suffixes (k/m/b/t). if false, uses comma grouping
-     * @return formatted currency string (with symbol)
-     */
-    public String format(double amount, boolean compact);
-
-    /**
-     * Parses a formatted currency string back into a number.
-     *
-     * <p>Supports optional currency symbol, optional comma grouping, and optional suffixes (k/m/b/t).</p>
-     *
-     * <p>Examples:</p>
-     * <ul>
-     *   <li>"$1k" -> 1000</li>
-     *   <li>"1k" -> 1000</li>
-     *   <li>"$2.5m" -> 2500000</li>
-     *   <li>"1,000" -> 1000</li>
-     *   <li>"-$10b" -> -10000000000</li>
-     * </ul>
-     *
-     * @param formatted the formatted string (symbol optional, supports commas and suffixes: k/m/b/t)
-     * @return parsed numeric value
-     * @throws NumberFormatException if the input is invalid
-     */
-    public double parseFormatted(String formatted);
-
-    /**
-     * Gets a player's current balance by their name.
-     *
-     * @param playerName the player's name
-     * @return the player's balance
-     */
-    public double getBalance(String playerName);
-
-    /**
-     * Gets a player's current balance by their UUID.
-     *
-     * @param playerUUID the player's UUID
-     * @return the player's balance
-     */
-    public double getBalance(UUID playerUUID);
-
-    /**
-     * Gets a player's current balance by PlayerRef.
-     *
-     * @param playerRef the player reference
-     * @return the player's balance
-     */
-    public double getBalance(PlayerRef playerRef);
-
-    /**
-     * Checks if a player has at least the given amount (by name).
-     *
-     * @param playerName the player's name
-     * @param amount the amount required
-     * @return true if the player has enough money, otherwise false
-     */
-    public boolean has(String playerName, double amount);
-
-    /**
-     * Checks if a player has at least the given amount (by UUID).
-     *
-     * @param playerUUID the player's UUID
-     * @param amount the amount required
-     * @return true if the player has enough money, otherwise false
-     */
-    public boolean has(UUID playerUUID, double amount);
-
-    /**
-     * Checks if a player has at least the given amount (by PlayerRef).
-     *
-     * @param playerRef the player reference
-     * @param amount the amount required
-     * @return true if the player has enough money, otherwise false
-     */
-    public boolean has(PlayerRef playerRef, double amount);
-
-    /**
-     * Withdraws money from a player's balance (by name).
-     *
-     * @param playerName the player's name
-     * @param amount the amount to withdraw
-     * @return an {@link EconomyResponse} describing the result
-     */
-    public EconomyResponse withdraw(String playerName, double amount);
-
-    /**
-     * Withdraws money from a player's balance (by UUID).
-     *
-     * @param playerUUID the player's UUID
-     * @param amount the amount to withdraw
-     * @return an {@link EconomyResponse} describing the result
-     */
-    public EconomyResponse withdraw(UUID playerUUID, double amount);
-
-    /**
-     * Withdraws money from a player's balance (by PlayerRef).
-     *
-     * @param playerRef the player reference
-     * @param amount the amount to withdraw
-     * @return an {@link EconomyResponse} describing the result
-     */
-    public EconomyResponse withdraw(PlayerRef playerRef, double amount);
-
-    /**
-     * Deposits money into a player's balance (by name).
-     *
-     * @param playerName the player's name
-     * @param amount the amount to deposit
-     * @return an {@link EconomyResponse} describing the result
-     */
-    public EconomyResponse deposit(String playerName, double amount);
-
-    /**
-     * Deposits money into a player's balance (by UUID).
-     *
-     * @param playerUUID the player's UUID
-     * @param amount the amount to deposit
-     * @return an {@link EconomyResponse} describing the result
-     */
-    public EconomyResponse deposit(UUID playerUUID, double amount);
-
-    /**
-     * Deposits money into a player's balance (by PlayerRef).
-     *
-     * @param playerRef the player reference
-     * @param amount the amount to deposit
-     * @return an {@link EconomyResponse} describing the result
-     */
-    public EconomyResponse deposit(PlayerRef playerRef, double amount);
+package me.clicker.economy;
+
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * The main economy API
+ *
+ */
+public interface Economy {
+    /**
+     * Gets the active Economy API instance.
+     *
+     * <p>This is a convenience method so other plugins/classes can do:</p>
+     * <pre>{@code
+     * Economy eco = Economy.get();
+     * }</pre>
+     *
+     * @return the active {@link Economy} instance
+     * @throws IllegalStateException if the economy system is not initialized yet
+     */
+    static Economy get() {
+        return null;
+    }
+
+    /**
+     * Gets the currency symbol used by the economy system.
+     *
+     * @return currency symbol (example: "$")
+     */
+    public String getCurrencySymbol();
+
+    /**
+     * Formats an amount into a human-readable currency string.
+     *
+     * <p>The returned string includes the currency symbol (if configured), and supports two modes:</p>
+     * <ul>
+     *   <li><b>compact=true</b>: uses suffixes (k/m/b/t)</li>
+     *   <li><b>compact=false</b>: uses comma grouping (1,000 / 2,500,000)</li>
+     * </ul>
+     *
+     * <p>Examples:</p>
+     * <ul>
+     *   <li>compact=true  -> "$1k", "$2.5m", "-$10b"</li>
+     *   <li>compact=false -> "$1,000", "$2,500,000", "-$10,000,000,000"</li>
+     * </ul>
+     *
+     * @param amount  the amount to format
+     * @param compact if true, uses suffixes (k/m/b/t). if false, uses comma grouping
+     * @return formatted currency string (with symbol)
+     */
+    public String format(double amount, boolean compact);
+
+    /**
+     * Parses a formatted currency string back into a number.
+     *
+     * <p>Supports optional currency symbol, optional comma grouping, and optional suffixes (k/m/b/t).</p>
+     *
+     * <p>Examples:</p>
+     * <ul>
+     *   <li>"$1k" -> 1000</li>
+     *   <li>"1k" -> 1000</li>
+     *   <li>"$2.5m" -> 2500000</li>
+     *   <li>"1,000" -> 1000</li>
+     *   <li>"-$10b" -> -10000000000</li>
+     * </ul>
+     *
+     * @param formatted the formatted string (symbol optional, supports commas and suffixes: k/m/b/t)
+     * @return parsed numeric value
+     * @throws NumberFormatException if the input is invalid
+     */
+    public double parseFormatted(String formatted);
+
+    /**
+     * Gets a player's current balance by their name.
+     *
+     * @param playerName the player's name
+     * @return the player's balance
+     */
+    public double getBalance(String playerName);
+
+    /**
+     * Gets a player's current balance by their UUID.
+     *
+     * @param playerUUID the player's UUID
+     * @return the player's balance
+     */
+    public double getBalance(UUID playerUUID);
+
+    /**
+     * Gets a player's current balance by PlayerRef.
+     *
+     * @param playerRef the player reference
+     * @return the player's balance
+     */
+    public double getBalance(PlayerRef playerRef);
+
+    /**
+     * Checks if a player has at least the given amount (by name).
+     *
+     * @param playerName the player's name
+     * @param amount the amount required
+     * @return true if the player has enough money, otherwise false
+     */
+    public boolean has(String playerName, double amount);
+
+    /**
+     * Checks if a player has at least the given amount (by UUID).
+     *
+     * @param playerUUID the player's UUID
+     * @param amount the amount required
+     * @return true if the player has enough money, otherwise false
+     */
+    public boolean has(UUID playerUUID, double amount);
+
+    /**
+     * Checks if a player has at least the given amount (by PlayerRef).
+     *
+     * @param playerRef the player reference
+     * @param amount the amount required
+     * @return true if the player has enough money, otherwise false
+     */
+    public boolean has(PlayerRef playerRef, double amount);
+
+    /**
+     * Withdraws money from a player's balance (by name).
+     *
+     * @param playerName the player's name
+     * @param amount the amount to withdraw
+     * @return an {@link EconomyResponse} describing the result
+     */
+    public EconomyResponse withdraw(String playerName, double amount);
+
+    /**
+     * Withdraws money from a player's balance (by UUID).
+     *
+     * @param playerUUID the player's UUID
+     * @param amount the amount to withdraw
+     * @return an {@link EconomyResponse} describing the result
+     */
+    public EconomyResponse withdraw(UUID playerUUID, double amount);
+
+    /**
+     * Withdraws money from a player's balance (by PlayerRef).
+     *
+     * @param playerRef the player reference
+     * @param amount the amount to withdraw
+     * @return an {@link EconomyResponse} describing the result
+     */
+    public EconomyResponse withdraw(PlayerRef playerRef, double amount);
+
+    /**
+     * Deposits money into a player's balance (by name).
+     *
+     * @param playerName the player's name
+     * @param amount the amount to deposit
+     * @return an {@link EconomyResponse} describing the result
+     */
+    public EconomyResponse deposit(String playerName, double amount);
+
+    /**
+     * Deposits money into a player's balance (by UUID).
+     *
+     * @param playerUUID the player's UUID
+     * @param amount the amount to deposit
+     * @return an {@link EconomyResponse} describing the result
+     */
+    public EconomyResponse deposit(UUID playerUUID, double amount);
+
+    /**
+     * Deposits money into a player's balance (by PlayerRef).
+     *
+     * @param playerRef the player reference
+     * @param amount the amount to deposit
+     * @return an {@link EconomyResponse} describing the result
+     */
+    public EconomyResponse deposit(PlayerRef playerRef, double amount);
+
+    /**
+     * Transfers money from one player to another (by UUID).
+     *
+     * <p>The transfer is atomic: either both balances change or neither does.</p>
+     *
+     * @param fromUUID the paying player's UUID
+     * @param toUUID the receiving player's UUID
+     * @param amount the amount to transfer
+     * @return an {@link EconomyResponse} describing the result, with the payer's new balance
+     */
+    public EconomyResponse transfer(UUID fromUUID, UUID toUUID, double amount);
+
+    /**
+     * Gets a player's current balance by their UUID without blocking the calling thread.
+     *
+     * @param playerUUID the player's UUID
+     * @return a future completed with the player's balance
+     */
+    public CompletableFuture<Double> getBalanceAsync(UUID playerUUID);
+
+    /**
+     * Withdraws money from a player's balance (by UUID) without blocking the calling thread.
+     *
+     * @param playerUUID the player's UUID
+     * @param amount the amount to withdraw
+     * @return a future completed with an {@link EconomyResponse} describing the result
+     */
+    public CompletableFuture<EconomyResponse> withdrawAsync(UUID playerUUID, double amount);
+
+    /**
+     * Deposits money into a player's balance (by UUID) without blocking the calling thread.
+     *
+     * @param playerUUID the player's UUID
+     * @param amount the amount to deposit
+     * @return a future completed with an {@link EconomyResponse} describing the result
+     */
+    public CompletableFuture<EconomyResponse> depositAsync(UUID playerUUID, double amount);
+
+    /**
+     * Transfers money from one player to another (by UUID) without blocking the calling thread.
+     *
+     * @param fromUUID the paying player's UUID
+     * @param toUUID the receiving player's UUID
+     * @param amount the amount to transfer
+     * @return a future completed with an {@link EconomyResponse} describing the result
+     */
+    public CompletableFuture<EconomyResponse> transferAsync(UUID fromUUID, UUID toUUID, double amount);
+
+    /**
+     * Starts a batch of debits and credits across several players that is applied all-or-nothing.
+     *
+     * <p>Useful for trades that move money between three or more accounts, such as buyer to seller plus a
+     * tax account, without a window where only some of the balances have changed.</p>
+     *
+     * @return a new, empty {@link EconomyBatch}
+     */
+    public EconomyBatch batch();
+
+    /**
+     * Gets a player's position on the balance leaderboard.
+     *
+     * <p>Served from memory, so it is cheap enough for scoreboards.</p>
+     *
+     * @param playerUUID the player's UUID
+     * @return the 1-based rank, or 0 if the player has no account
+     */
+    public int getRank(UUID playerUUID);
+
+    /**
+     * Gets a slice of the balance leaderboard, ordered from highest to lowest balance.
+     *
+     * <p>Positions are zero-based and {@code to} is exclusive, so {@code getTopRange(0, 10)} returns the top ten.
+     * Served from memory, so it is cheap enough for scoreboards.</p>
+     *
+     * @param from the first position to include
+     * @param to the position to stop before
+     * @return the entries in that range (fewer if the leaderboard is shorter)
+     */
+    public List<LeaderboardEntry> getTopRange(int from, int to);
+
+    /**
+     * Gets the accounts that follow a given one, for walking every account a page at a time.
+     *
+     * <p>Pass null to get the first page, then the last entry of each page to get the next, until a page comes
+     * back empty. The cursor is only the entry's key, so a walk can be paused and resumed at any time. Each page
+     * is a separate short read seeking straight to that key, so a full walk takes linear time, and nothing is
+     * held open between pages. May read from storage, so avoid calling it on the main thread.</p>
+     *
+     * @param order the order to walk in
+     * @param after the last entry already seen, or null to start from the beginning
+     * @param limit the maximum number of entries to return
+     * @return the next entries, in order (empty once the walk is complete)
+     */
+    public List<AccountEntry> getAccountsAfter(AccountOrder order, AccountEntry after, int limit);
+
+    /**
+     * Calls {@code action} for every account, fetching accounts in bounded pages with
+     * {@link #getAccountsAfter}.
+     *
+     * <p>Memory use does not grow with the number of accounts. Accounts that change during the walk are
+     * visited with whichever balance they had when their page was read. In {@link AccountOrder#BALANCE} order,
+     * an account whose balance moves it past the cursor may be visited twice or not at all.</p>
+     *
+     * @param order the order to walk in
+     * @param action the action to run for each account
+     */
+    public void forEachAccount(AccountOrder order, Consumer<AccountEntry> action);
+
+    /**
+     * Gets a lazy, sequential stream of every account, fetched in bounded pages as it is consumed, with the
+     * same guarantees as {@link #forEachAccount}.
+     *
+     * @param order the order to walk in
+     * @return a stream of every account
+     */
+    public Stream<AccountEntry> streamAccounts(AccountOrder order);
+
+    /**
+     * Gets the sum of every player's balance.
+     *
+     * <p>Maintained in memory as balances change, so it is cheap enough for scoreboards.</p>
+     *
+     * @return the total money in circulation
+     */
+    public double getMoneySupply();
+
+    /**
+     * Gets the number of player accounts.
+     *
+     * @return the account count
+     */
+    public int getAccountCount();
 }
\ No newline at end of file
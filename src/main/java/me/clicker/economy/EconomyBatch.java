@@ -0,0 +1,114 @@
+package me.clicker.economy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Collects debits and credits across several players and applies them all-or-nothing.
+ *
+ * <p>Amounts for the same player are netted, and only players whose net change is a debit need an
+ * account with enough funds. If any check fails, no balance changes.</p>
+ *
+ * <pre>{@code
+ * var response = economy.batch()
+ *     .withdraw(buyer, 100)
+ *     .deposit(seller, 95)
+ *     .deposit(taxAccount, 5)
+ *     .commit();
+ * }</pre>
+ *
+ * <p>A batch is not thread-safe and should be committed once.</p>
+ */
+public final class EconomyBatch {
+    private final EconomyImpl economy;
+    private final Map<UUID, Long> deltas = new LinkedHashMap<>();
+    private String error;
+
+    EconomyBatch(EconomyImpl economy) {
+        this.economy = economy;
+    }
+
+    /**
+     * Adds a debit from a player's balance.
+     *
+     * @param playerUUID the player's UUID
+     * @param amount the amount to withdraw
+     * @return this batch
+     */
+    public EconomyBatch withdraw(UUID playerUUID, double amount) {
+        return add(playerUUID, amount, true);
+    }
+
+    /**
+     * Adds a credit to a player's balance, creating the account if needed.
+     *
+     * @param playerUUID the player's UUID
+     * @param amount the amount to deposit
+     * @return this batch
+     */
+    public EconomyBatch deposit(UUID playerUUID, double amount) {
+        return add(playerUUID, amount, false);
+    }
+
+    /**
+     * Validates and applies every debit and credit atomically.
+     *
+     * @return an {@link EconomyBatchResponse} with each player's new balance
+     */
+    public EconomyBatchResponse commit() {
+        if (error != null) {
+            return EconomyBatchResponse.failure(null, error);
+        }
+
+        return economy.commit(deltas);
+    }
+
+    /**
+     * Validates and applies every debit and credit atomically without blocking the calling thread.
+     *
+     * @return a future completed with an {@link EconomyBatchResponse} with each player's new balance
+     */
+    public CompletableFuture<EconomyBatchResponse> commitAsync() {
+        if (error != null) {
+            return CompletableFuture.completedFuture(EconomyBatchResponse.failure(null, error));
+        }
+
+        // A copy, so changes made to this batch meanwhile can't reach the worker.
+        return economy.commitAsync(new LinkedHashMap<>(deltas));
+    }
+
+    private EconomyBatch add(UUID playerUUID, double amount, boolean debit) {
+        if (error != null) {
+            return this;
+        }
+
+        if (playerUUID == null) {
+            error = "Player not found.";
+            return this;
+        }
+
+        long minor;
+
+        try {
+            minor = Money.toMinor(amount);
+        } catch (ArithmeticException e) {
+            error = "Amount is too large.";
+            return this;
+        }
+
+        if (!Double.isFinite(amount) || minor <= 0) {
+            error = "Amount must be positive.";
+            return this;
+        }
+
+        try {
+            deltas.merge(playerUUID, debit ? -minor : minor, Math::addExact);
+        } catch (ArithmeticException e) {
+            error = "Amount is too large.";
+        }
+
+        return this;
+    }
+}
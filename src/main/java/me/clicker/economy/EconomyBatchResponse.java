@@ -0,0 +1,45 @@
+package me.clicker.economy;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Represents the result of an {@link EconomyBatch}.
+ *
+ * @param balances         Each player's new balance after the batch, empty on failure.
+ * @param type             The transaction status (success or failure).
+ * @param failedPlayerUUID The player whose check failed, if any.
+ * @param errorMessage     Optional error message if {@link #type()} is {@link EconomyResponse.ResponseType#FAILURE}.
+ */
+public record EconomyBatchResponse(Map<UUID, Double> balances, EconomyResponse.ResponseType type, UUID failedPlayerUUID, String errorMessage) {
+
+    /**
+     * Creates a successful response.
+     *
+     * @param balances each player's new balance
+     * @return success response
+     */
+    public static EconomyBatchResponse success(Map<UUID, Double> balances) {
+        return new EconomyBatchResponse(balances, EconomyResponse.ResponseType.SUCCESS, null, null);
+    }
+
+    /**
+     * Creates a failure response.
+     *
+     * @param failedPlayerUUID the player whose check failed, or null
+     * @param errorMessage reason for failure
+     * @return failure response
+     */
+    public static EconomyBatchResponse failure(UUID failedPlayerUUID, String errorMessage) {
+        return new EconomyBatchResponse(Map.of(), EconomyResponse.ResponseType.FAILURE, failedPlayerUUID, errorMessage);
+    }
+
+    /**
+     * Checks if the batch was applied.
+     *
+     * @return true if SUCCESS, otherwise false
+     */
+    public boolean isSuccess() {
+        return type == EconomyResponse.ResponseType.SUCCESS;
+    }
+}
@@ -1,328 +1,519 @@
-package me.clicker.economy;
-
-import com.hypixel.hytale.logger.HytaleLogger;
-import com.hypixel.hytale.server.core.universe.PlayerRef;
-import me.clicker.economy.config.Config;
-import me.clicker.economy.storage.SQLiteStorage;
-
-import java.util.UUID;
-import java.util.logging.Level;
-
-public class EconomyImpl implements Economy {
-    private final HytaleLogger logger;
-    private final SQLiteStorage storage;
-
-    public EconomyImpl() {
-        this.logger = EconomyPlugin.getInstance().getLogger();
-        this.storage = EconomyPlugin.getInstance().getStorage();
-    }
-
-    @Override
-    public String getCurrencySymbol() {
-        return Config.currency_symbol;
-    }
-
-    @Override
-    public String format(double amount, boolean compact) {
-        var symbol = getCurrencySymbol();
-
-        if (!Double.isFinite(amount)) {
-            return symbol + "0";
-        }
-
-        var negative = amount < 0;
-        var value = Math.abs(amount);
-
-        var digits = Math.max(0, Config.currency_fraction_digits);
-
-        if (!compact) {
-            var full = String.format(java.util.Locale.US, "%,." + digits + "f", value);
-
-            if (digits > 0) {
-                var zeros = "." + "0".repeat(digits);
-                if (full.endsWith(zeros)) {
-                    full = full.substring(0, full.length() - zeros.length());
-                }
-            }
-
-            return symbol + (negative ? "-" + full : full);
-        }
-
-        var suffix = "";
-        double shown = value;
-
-        if (value >= 1_000_000_000_000.0) {
-            shown = value / 1_000_000_000_000.0;
-            suffix = "t";
-        } else if (value >= 1_000_000_000.0) {
-            shown = value / 1_000_000_000.0;
-            suffix = "b";
-        } else if (value >= 1_000_000.0) {
-            shown = value / 1_000_000.0;
-            suffix = "m";
-        } else if (value >= 1_000.0) {
-            shown = value / 1_000.0;
-            suffix = "k";
-        }
-
-        var number = String.format(java.util.Locale.US, "%." + digits + "f", shown);
-
-        if (digits > 0) {
-            var zeros = "." + "0".repeat(digits);
-            if (number.endsWith(zeros)) {
-                number = number.substring(0, number.length() - zeros.length());
-            }
-        }
-
-        var result = number + suffix;
-        return symbol + (negative ? "-" + result : result);
-    }
-
-    @Override
-    public double parseFormatted(String formatted) {
-        if (formatted == null) {
-            throw new NumberFormatException("null");
-        }
-
-        var s = formatted.trim();
-
-        if (s.isEmpty()) {
-            throw new NumberFormatException("empty");
-        }
-
-        var negative = false;
-
-        if (s.startsWith("-")) {
-            negative = true;
-            s = s.substring(1).trim();
-
-            if (s.isEmpty()) {
-                throw new NumberFormatException("just '-'");
-            }
-        }
-
-        var symbol = getCurrencySymbol();
-
-        if (symbol != null && !symbol.isBlank() && s.startsWith(symbol)) {
-            s = s.substring(symbol.length()).trim();
-
-            if (s.isEmpty()) {
-                throw new NumberFormatException("missing number after symbol");
-            }
-        }
-
-        var multiplier = 1.0;
-        var last = Character.toLowerCase(s.charAt(s.length() - 1));
-
-        if (last == 'k' || last == 'm' || last == 'b' || last == 't') {
-            s = s.substring(0, s.length() - 1).trim();
-
-            if (s.isEmpty()) {
-                throw new NumberFormatException("missing number before suffix");
-            }
-
-            multiplier = switch (last) {
-                case 'k' -> 1_000.0;
-                case 'm' -> 1_000_000.0;
-                case 'b' -> 1_000_000_000.0;
-                case 't' -> 1_000_000_000_000.0;
-                default -> 1.0;
-            };
-        }
-
-        s = s.replace(",", "").trim();
-
-        if (s.isEmpty()) {
-            throw new NumberFormatException("empty after cleanup");
-        }
-
-        var value = Double.parseDouble(s) * multiplier;
-        return negative ? -value : value;
-    }
-
-    @Override
-    public double getBalance(String playerName) {
-        if (playerName == null || playerName.isBlank()) {
-            return 0.0;
-        }
-
-        try {
-            var row = storage.getRow(playerName);
-            return row != null ? row.balance() : 0.0;
-        } catch (Exception e) {
-            throw new RuntimeException("getBalance failed for username=" + playerName, e);
-        }
-    }
-
-    @Override
-    public double getBalance(UUID playerUUID) {
-        if (playerUUID == null) {
-            return 0.0;
-        }
-
-        try {
-            var row = storage.getRow(playerUUID);
-            return row != null ? row.balance() : 0.0;
-        } catch (Exception e) {
-            throw new RuntimeException("getBalance failed for uuid=" + playerUUID, e);
-        }
-    }
-
-    @Override
-    public double getBalance(PlayerRef playerRef) {
-        if (playerRef == null) {
-            return 0.0;
-        }
-
-        return getBalance(playerRef.getUuid());
-    }
-
-    @Override
-    public boolean has(String playerName, double amount) {
-        if (playerName == null || playerName.isBlank() || !Double.isFinite(amount)) {
-            return false;
-        }
-
-        return getBalance(playerName) >= amount;
-    }
-
-    @Override
-    public boolean has(UUID playerUUID, double amount) {
-        if (playerUUID == null || !Double.isFinite(amount)) {
-            return false;
-        }
-
-        return getBalance(playerUUID) >= amount;
-    }
-
-    @Override
-    public boolean has(PlayerRef playerRef, double amount) {
-        if (playerRef == null) {
-            return false;
-        }
-
-        return has(playerRef.getUuid(), amount);
-    }
-
-    @Override
-    public EconomyResponse withdraw(String playerName, double amount) {
-        if (playerName == null || playerName.isBlank()) {
-            return EconomyResponse.failure(amount, 0.0, "Player not found.");
-        }
-
-        try {
-            var row = storage.getRow(playerName);
-            return row == null ? EconomyResponse.failure(amount, 0.0, "Player not found.") : withdraw(row.uuid(), amount);
-        } catch (Exception e) {
-            this.logger.at(Level.SEVERE).withCause(e).log("Failed to withdraw for " + playerName + " (N/A), amount=" + amount);
-            return EconomyResponse.failure(amount, 0.0, "Internal error.");
-        }
-    }
-
-    @Override
-    public EconomyResponse withdraw(UUID playerUUID, double amount) {
-        if (playerUUID == null) {
-            return EconomyResponse.failure(amount, 0.0, "Player not found.");
-        }
-
-        if (!Double.isFinite(amount) || amount <= 0) {
-            return EconomyResponse.failure(amount, getBalance(playerUUID), "Amount must be positive.");
-        }
-
-        try {
-            var result = storage.takeIfEnough(playerUUID, null, amount);
-
-            if (!result.success()) {
-                if (result.reason() == SQLiteStorage.TakeResult.Reason.NOT_ENOUGH) {
-                    return EconomyResponse.failure(amount, result.balance(), "Not enough funds.");
-                }
-
-                return EconomyResponse.failure(amount, 0.0, "Player not found.");
-            }
-
-            return EconomyResponse.success(amount, result.balance());
-        } catch (Exception e) {
-            this.logger.at(Level.SEVERE).withCause(e).log("Failed to withdraw for N/A (" + playerUUID + "), amount=" + amount);
-            return EconomyResponse.failure(amount, 0.0, "Internal error.");
-        }
-    }
-
-    @Override
-    public EconomyResponse withdraw(PlayerRef playerRef, double amount) {
-        if (playerRef == null) {
-            return EconomyResponse.failure(amount, 0.0, "Player not found.");
-        }
-
-        if (!Double.isFinite(amount) || amount <= 0) {
-            return EconomyResponse.failure(amount, getBalance(playerRef.getUuid()), "Amount must be positive.");
-        }
-
-        try {
-            var result = storage.takeIfEnough(playerRef.getUuid(), playerRef.getUsername(), amount);
-
-            if (!result.success()) {
-                if (result.reason() == SQLiteStorage.TakeResult.Reason.NOT_ENOUGH) {
-                    return EconomyResponse.failure(amount, result.balance(), "Not enough funds.");
-                }
-
-                return EconomyResponse.failure(amount, 0.0, "Player not found.");
-            }
-
-            return EconomyResponse.success(amount, result.balance());
-        } catch (Exception e) {
-            this.logger.at(Level.SEVERE).withCause(e).log("Failed to withdraw for " + playerRef.getUsername() + " (" + playerRef.getUuid() + "), amount=" + amount);
-            return EconomyResponse.failure(amount, 0.0, "Internal error.");
-        }
-    }
-
-    @Override
-    public EconomyResponse deposit(String playerName, double amount) {
-        if (playerName == null || playerName.isBlank()) {
-            return EconomyResponse.failure(amount, 0.0, "Player not found.");
-        }
-
-        try {
-            var row = storage.getRow(playerName);
-            return row == null ? EconomyResponse.failure(amount, 0.0, "Player not found.") : deposit(row.uuid(), amount);
-        } catch (Exception e) {
-            this.logger.at(Level.SEVERE).withCause(e).log("Failed to deposit for " + playerName + " (N/A), amount=" + amount);
-            return EconomyResponse.failure(amount, 0.0, "Internal error.");
-        }
-    }
-
-    @Override
-    public EconomyResponse deposit(UUID playerUUID, double amount) {
-        if (playerUUID == null) {
-            return EconomyResponse.failure(amount, 0.0, "Player not found.");
-        }
-
-        if (!Double.isFinite(amount) || amount <= 0) {
-            return EconomyResponse.failure(amount, getBalance(playerUUID), "Amount must be positive.");
-        }
-
-        try {
-            return EconomyResponse.success(amount, storage.give(playerUUID, null, amount));
-        } catch (Exception e) {
-            this.logger.at(Level.SEVERE).withCause(e).log("Failed to deposit for N/A (" + playerUUID + "), amount=" + amount);
-            return EconomyResponse.failure(amount, 0.0, "Internal error.");
-        }
-    }
-
-    @Override
-    public EconomyResponse deposit(PlayerRef playerRef, double amount) {
-        if (playerRef == null) {
-            return EconomyResponse.failure(amount, 0.0, "Player not found.");
-        }
-
-        if (!Double.isFinite(amount) || amount <= 0) {
-            return EconomyResponse.failure(amount, getBalance(playerRef.getUuid()), "Amount must be positive.");
-        }
-
-        try {
-            return EconomyResponse.success(amount, storage.give(playerRef.getUuid(), playerRef.getUsername(), amount));
-        } catch (Exception e) {
-            this.logger.at(Level.SEVERE).withCause(e).log("Failed to deposit for " + playerRef.getUsername() + " (" + playerRef.getUuid() + "), amount=" + amount);
-            return EconomyResponse.failure(amount, 0.0, "Internal error.");
-        }
-    }
-}
+package me.clicker.economy;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import me.clicker.economy.config.Config;
+import me.clicker.economy.storage.AccountCache;
+import me.clicker.economy.storage.Storage;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.logging.Level;
+
+public class EconomyImpl implements Economy {
+    private static final int ACCOUNT_PAGE_SIZE = 500;
+
+    private final HytaleLogger logger;
+    private final AccountCache accounts;
+    private final ExecutorService async;
+    private final MoneyFormat moneyFormat;
+
+    public EconomyImpl() {
+        this(EconomyPlugin.getInstance().getLogger(), EconomyPlugin.getInstance().getAccounts());
+    }
+
+    public EconomyImpl(HytaleLogger logger, AccountCache accounts) {
+        this.logger = logger;
+        this.accounts = accounts;
+        this.async = Executors.newFixedThreadPool(2, r -> {
+            var thread = new Thread(r, "Economy-Async");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.moneyFormat = new MoneyFormat(Config.currency_symbol, Money.fractionDigits());
+    }
+
+    /**
+     * Stops taking async calls and waits for the queued ones, so their changes reach the cache before it is
+     * flushed for the last time. Later async calls complete exceptionally.
+     */
+    public void shutdown() {
+        async.shutdown();
+
+        try {
+            if (!async.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.at(Level.WARNING).log("Async economy calls were still running after 10 seconds");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String getCurrencySymbol() {
+        return Config.currency_symbol;
+    }
+
+    @Override
+    public String format(double amount, boolean compact) {
+        return moneyFormat.format(amount, compact);
+    }
+
+    @Override
+    public double parseFormatted(String formatted) {
+        return MoneyParser.parse(formatted);
+    }
+
+    @Override
+    public double getBalance(String playerName) {
+        if (playerName == null || playerName.isBlank()) {
+            return 0.0;
+        }
+
+        try {
+            var row = accounts.getRow(playerName);
+            return row != null ? Money.toMajor(row.balance()) : 0.0;
+        } catch (Exception e) {
+            throw new RuntimeException("getBalance failed for username=" + playerName, e);
+        }
+    }
+
+    @Override
+    public double getBalance(UUID playerUUID) {
+        if (playerUUID == null) {
+            return 0.0;
+        }
+
+        try {
+            var row = accounts.getRow(playerUUID);
+            return row != null ? Money.toMajor(row.balance()) : 0.0;
+        } catch (Exception e) {
+            throw new RuntimeException("getBalance failed for uuid=" + playerUUID, e);
+        }
+    }
+
+    @Override
+    public double getBalance(PlayerRef playerRef) {
+        if (playerRef == null) {
+            return 0.0;
+        }
+
+        return getBalance(playerRef.getUuid());
+    }
+
+    @Override
+    public boolean has(String playerName, double amount) {
+        if (playerName == null || playerName.isBlank() || !Double.isFinite(amount)) {
+            return false;
+        }
+
+        try {
+            return Money.toMinor(getBalance(playerName)) >= Money.toMinor(amount);
+        } catch (ArithmeticException e) {
+            return amount < 0;
+        }
+    }
+
+    @Override
+    public boolean has(UUID playerUUID, double amount) {
+        if (playerUUID == null || !Double.isFinite(amount)) {
+            return false;
+        }
+
+        try {
+            return Money.toMinor(getBalance(playerUUID)) >= Money.toMinor(amount);
+        } catch (ArithmeticException e) {
+            return amount < 0;
+        }
+    }
+
+    @Override
+    public boolean has(PlayerRef playerRef, double amount) {
+        if (playerRef == null) {
+            return false;
+        }
+
+        return has(playerRef.getUuid(), amount);
+    }
+
+    @Override
+    public EconomyResponse withdraw(String playerName, double amount) {
+        if (playerName == null || playerName.isBlank()) {
+            return EconomyResponse.failure(amount, 0.0, "Player not found.");
+        }
+
+        try {
+            var row = accounts.getRow(playerName);
+            return row == null ? EconomyResponse.failure(amount, 0.0, "Player not found.") : withdraw(row.uuid(), amount);
+        } catch (Exception e) {
+            this.logger.at(Level.SEVERE).withCause(e).log("Failed to withdraw for " + playerName + " (N/A), amount=" + amount);
+            return EconomyResponse.failure(amount, 0.0, "Internal error.");
+        }
+    }
+
+    @Override
+    public EconomyResponse withdraw(UUID playerUUID, double amount) {
+        if (playerUUID == null) {
+            return EconomyResponse.failure(amount, 0.0, "Player not found.");
+        }
+
+        var invalid = invalidAmount(amount);
+
+        if (invalid != null) {
+            return EconomyResponse.failure(amount, getBalance(playerUUID), invalid);
+        }
+
+        try {
+            var result = accounts.takeIfEnough(null, playerUUID, null, Money.toMinor(amount));
+
+            if (!result.success()) {
+                if (result.reason() == Storage.TakeResult.Reason.NOT_ENOUGH) {
+                    return EconomyResponse.failure(amount, Money.toMajor(result.balance()), "Not enough funds.");
+                }
+
+                return EconomyResponse.failure(amount, 0.0, "Player not found.");
+            }
+
+            return EconomyResponse.success(amount, Money.toMajor(result.balance()));
+        } catch (Exception e) {
+            this.logger.at(Level.SEVERE).withCause(e).log("Failed to withdraw for N/A (" + playerUUID + "), amount=" + amount);
+            return EconomyResponse.failure(amount, 0.0, "Internal error.");
+        }
+    }
+
+    @Override
+    public EconomyResponse withdraw(PlayerRef playerRef, double amount) {
+        if (playerRef == null) {
+            return EconomyResponse.failure(amount, 0.0, "Player not found.");
+        }
+
+        var invalid = invalidAmount(amount);
+
+        if (invalid != null) {
+            return EconomyResponse.failure(amount, getBalance(playerRef.getUuid()), invalid);
+        }
+
+        try {
+            var result = accounts.takeIfEnough(null, playerRef.getUuid(), playerRef.getUsername(), Money.toMinor(amount));
+
+            if (!result.success()) {
+                if (result.reason() == Storage.TakeResult.Reason.NOT_ENOUGH) {
+                    return EconomyResponse.failure(amount, Money.toMajor(result.balance()), "Not enough funds.");
+                }
+
+                return EconomyResponse.failure(amount, 0.0, "Player not found.");
+            }
+
+            return EconomyResponse.success(amount, Money.toMajor(result.balance()));
+        } catch (Exception e) {
+            this.logger.at(Level.SEVERE).withCause(e).log("Failed to withdraw for " + playerRef.getUsername() + " (" + playerRef.getUuid() + "), amount=" + amount);
+            return EconomyResponse.failure(amount, 0.0, "Internal error.");
+        }
+    }
+
+    @Override
+    public EconomyResponse deposit(String playerName, double amount) {
+        if (playerName == null || playerName.isBlank()) {
+            return EconomyResponse.failure(amount, 0.0, "Player not found.");
+        }
+
+        try {
+            var row = accounts.getRow(playerName);
+            return row == null ? EconomyResponse.failure(amount, 0.0, "Player not found.") : deposit(row.uuid(), amount);
+        } catch (Exception e) {
+            this.logger.at(Level.SEVERE).withCause(e).log("Failed to deposit for " + playerName + " (N/A), amount=" + amount);
+            return EconomyResponse.failure(amount, 0.0, "Internal error.");
+        }
+    }
+
+    @Override
+    public EconomyResponse deposit(UUID playerUUID, double amount) {
+        if (playerUUID == null) {
+            return EconomyResponse.failure(amount, 0.0, "Player not found.");
+        }
+
+        var invalid = invalidAmount(amount);
+
+        if (invalid != null) {
+            return EconomyResponse.failure(amount, getBalance(playerUUID), invalid);
+        }
+
+        try {
+            return EconomyResponse.success(amount, Money.toMajor(accounts.give(null, playerUUID, null, Money.toMinor(amount))));
+        } catch (Exception e) {
+            this.logger.at(Level.SEVERE).withCause(e).log("Failed to deposit for N/A (" + playerUUID + "), amount=" + amount);
+            return EconomyResponse.failure(amount, 0.0, "Internal error.");
+        }
+    }
+
+    @Override
+    public EconomyResponse deposit(PlayerRef playerRef, double amount) {
+        if (playerRef == null) {
+            return EconomyResponse.failure(amount, 0.0, "Player not found.");
+        }
+
+        var invalid = invalidAmount(amount);
+
+        if (invalid != null) {
+            return EconomyResponse.failure(amount, getBalance(playerRef.getUuid()), invalid);
+        }
+
+        try {
+            return EconomyResponse.success(amount, Money.toMajor(accounts.give(null, playerRef.getUuid(), playerRef.getUsername(), Money.toMinor(amount))));
+        } catch (Exception e) {
+            this.logger.at(Level.SEVERE).withCause(e).log("Failed to deposit for " + playerRef.getUsername() + " (" + playerRef.getUuid() + "), amount=" + amount);
+            return EconomyResponse.failure(amount, 0.0, "Internal error.");
+        }
+    }
+
+    @Override
+    public EconomyResponse transfer(UUID fromUUID, UUID toUUID, double amount) {
+        if (fromUUID == null || toUUID == null) {
+            return EconomyResponse.failure(amount, 0.0, "Player not found.");
+        }
+
+        var invalid = invalidAmount(amount);
+
+        if (invalid != null) {
+            return EconomyResponse.failure(amount, getBalance(fromUUID), invalid);
+        }
+
+        if (fromUUID.equals(toUUID)) {
+            return EconomyResponse.failure(amount, getBalance(fromUUID), "Cannot transfer to the same player.");
+        }
+
+        try {
+            if (!accounts.transfer(null, fromUUID, null, toUUID, null, Money.toMinor(amount))) {
+                var row = accounts.getRow(fromUUID);
+                return row == null ? EconomyResponse.failure(amount, 0.0, "Player not found.") : EconomyResponse.failure(amount, Money.toMajor(row.balance()), "Not enough funds.");
+            }
+
+            var row = accounts.getRow(fromUUID);
+            return EconomyResponse.success(amount, row != null ? Money.toMajor(row.balance()) : 0.0);
+        } catch (Exception e) {
+            this.logger.at(Level.SEVERE).withCause(e).log("Failed to transfer from " + fromUUID + " to " + toUUID + ", amount=" + amount);
+            return EconomyResponse.failure(amount, 0.0, "Internal error.");
+        }
+    }
+
+    @Override
+    public CompletableFuture<Double> getBalanceAsync(UUID playerUUID) {
+        if (playerUUID == null || accounts.isLoaded(playerUUID)) {
+            return CompletableFuture.completedFuture(getBalance(playerUUID));
+        }
+
+        return supplyAsync(() -> getBalance(playerUUID));
+    }
+
+    @Override
+    public CompletableFuture<EconomyResponse> withdrawAsync(UUID playerUUID, double amount) {
+        if (playerUUID == null || accounts.isWriteBehind() && accounts.isLoaded(playerUUID)) {
+            return CompletableFuture.completedFuture(withdraw(playerUUID, amount));
+        }
+
+        return supplyAsync(() -> withdraw(playerUUID, amount));
+    }
+
+    @Override
+    public CompletableFuture<EconomyResponse> depositAsync(UUID playerUUID, double amount) {
+        if (playerUUID == null || accounts.isWriteBehind() && accounts.isLoaded(playerUUID)) {
+            return CompletableFuture.completedFuture(deposit(playerUUID, amount));
+        }
+
+        return supplyAsync(() -> deposit(playerUUID, amount));
+    }
+
+    @Override
+    public CompletableFuture<EconomyResponse> transferAsync(UUID fromUUID, UUID toUUID, double amount) {
+        if (fromUUID == null || toUUID == null || accounts.isWriteBehind() && accounts.isLoaded(fromUUID) && accounts.isLoaded(toUUID)) {
+            return CompletableFuture.completedFuture(transfer(fromUUID, toUUID, amount));
+        }
+
+        return supplyAsync(() -> transfer(fromUUID, toUUID, amount));
+    }
+
+    @Override
+    public EconomyBatch batch() {
+        return new EconomyBatch(this);
+    }
+
+    EconomyBatchResponse commit(Map<UUID, Long> deltas) {
+        if (deltas.isEmpty()) {
+            return EconomyBatchResponse.success(Map.of());
+        }
+
+        try {
+            var result = accounts.applyBatch(null, deltas);
+
+            if (!result.success()) {
+                if (result.reason() == Storage.TakeResult.Reason.NOT_ENOUGH) {
+                    return EconomyBatchResponse.failure(result.failed(), "Not enough funds.");
+                }
+
+                return EconomyBatchResponse.failure(result.failed(), "Player not found.");
+            }
+
+            var balances = new LinkedHashMap<UUID, Double>(result.balances().size());
+
+            for (var entry : result.balances().entrySet()) {
+                balances.put(entry.getKey(), Money.toMajor(entry.getValue()));
+            }
+
+            return EconomyBatchResponse.success(balances);
+        } catch (Exception e) {
+            this.logger.at(Level.SEVERE).withCause(e).log("Failed to apply batch of " + deltas.size() + " accounts: " + deltas);
+            return EconomyBatchResponse.failure(null, "Internal error.");
+        }
+    }
+
+    CompletableFuture<EconomyBatchResponse> commitAsync(Map<UUID, Long> deltas) {
+        if (accounts.isWriteBehind() && deltas.keySet().stream().allMatch(accounts::isLoaded)) {
+            return CompletableFuture.completedFuture(commit(deltas));
+        }
+
+        return supplyAsync(() -> commit(deltas));
+    }
+
+    @Override
+    public int getRank(UUID playerUUID) {
+        return playerUUID == null ? 0 : accounts.getRank(playerUUID);
+    }
+
+    @Override
+    public List<LeaderboardEntry> getTopRange(int from, int to) {
+        from = Math.max(0, from);
+
+        if (to <= from) {
+            return List.of();
+        }
+
+        var rows = accounts.getTop(to - from, from);
+        var out = new ArrayList<LeaderboardEntry>(rows.size());
+
+        for (var i = 0; i < rows.size(); i++) {
+            var row = rows.get(i);
+            out.add(new LeaderboardEntry(from + i + 1, row.uuid(), row.name(), Money.toMajor(row.balance())));
+        }
+
+        return out;
+    }
+
+    @Override
+    public List<AccountEntry> getAccountsAfter(AccountOrder order, AccountEntry after, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+
+        try {
+            var rows = switch (order) {
+                case BALANCE -> after == null ? accounts.getTop(limit, 0) : accounts.getTopAfter(Money.toMinor(after.balance()), after.playerUUID(), limit);
+                case UUID -> accounts.getRowsAfter(after == null ? null : after.playerUUID(), limit);
+            };
+            var out = new ArrayList<AccountEntry>(rows.size());
+
+            for (var row : rows) {
+                out.add(new AccountEntry(row.uuid(), row.name() != null ? row.name() : "", Money.toMajor(row.balance())));
+            }
+
+            return out;
+        } catch (Exception e) {
+            throw new RuntimeException("getAccountsAfter failed for order=" + order + ", after=" + (after == null ? null : after.playerUUID()), e);
+        }
+    }
+
+    @Override
+    public void forEachAccount(AccountOrder order, Consumer<AccountEntry> action) {
+        streamAccounts(order).forEach(action);
+    }
+
+    @Override
+    public Stream<AccountEntry> streamAccounts(AccountOrder order) {
+        return StreamSupport.stream(new AccountSpliterator(order), false);
+    }
+
+    @Override
+    public double getMoneySupply() {
+        return Money.toMajor(accounts.getMoneySupply());
+    }
+
+    @Override
+    public int getAccountCount() {
+        return accounts.getAccountCount();
+    }
+
+    /**
+     * Gets why an amount can't be withdrawn, deposited or transferred, or null if it is a positive amount
+     * that fits in minor units.
+     */
+    private static String invalidAmount(double amount) {
+        try {
+            return Double.isFinite(amount) && Money.toMinor(amount) > 0 ? null : "Amount must be positive.";
+        } catch (ArithmeticException e) {
+            return "Amount is too large.";
+        }
+    }
+
+    /**
+     * Runs work that may touch storage off the calling thread. Calls that can be answered
+     * entirely from memory complete inline instead.
+     */
+    private <T> CompletableFuture<T> supplyAsync(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, async);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Walks accounts one page at a time, holding only the current page and the cursor.
+     */
+    private final class AccountSpliterator extends Spliterators.AbstractSpliterator<AccountEntry> {
+        private final AccountOrder order;
+        private Iterator<AccountEntry> page;
+        private AccountEntry last;
+        private boolean done;
+
+        private AccountSpliterator(AccountOrder order) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.order = order;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super AccountEntry> action) {
+            if (page == null || !page.hasNext()) {
+                if (done) {
+                    return false;
+                }
+
+                var entries = getAccountsAfter(order, last, ACCOUNT_PAGE_SIZE);
+
+                if (entries.isEmpty()) {
+                    done = true;
+                    return false;
+                }
+
+                page = entries.iterator();
+            }
+
+            last = page.next();
+            action.accept(last);
+            return true;
+        }
+    }
+}
\ No newline at end of file
@@ -1,71 +1,140 @@
-package me.clicker.economy;
-
-import com.hypixel.hytale.server.core.event.events.player.PlayerSetupConnectEvent;
-import com.hypixel.hytale.server.core.plugin.JavaPlugin;
-import com.hypixel.hytale.server.core.plugin.JavaPluginInit;
-import me.clicker.economy.commands.*;
-import me.clicker.economy.config.Config;
-import me.clicker.economy.config.Messages;
-import me.clicker.economy.storage.SQLiteStorage;
-
-import javax.annotation.Nonnull;
-import java.sql.SQLException;
-import java.util.logging.Level;
-
-public class EconomyPlugin extends JavaPlugin {
-    private static EconomyPlugin instance;
-    private static Economy economy;
-    private SQLiteStorage storage;
-
-    public EconomyPlugin(@Nonnull JavaPluginInit init) {
-        super(init);
-
-        instance = this;
-    }
-
-    @Override
-    protected void setup() {
-        var dataDir = getDataDirectory();
-
-        Config.load(dataDir);
-        Messages.load(dataDir);
-
-        storage = new SQLiteStorage(getDataDirectory().resolve("economy.db"));
-
-        storage.init();
-
-        economy = new EconomyImpl();
-
-        getCommandRegistry().registerCommand(new EcoCommand());
-        getCommandRegistry().registerCommand(new BalanceCommand());
-        getCommandRegistry().registerCommand(new BaltopCommand());
-        getCommandRegistry().registerCommand(new PayCommand());
-
-        getEventRegistry().register(PlayerSetupConnectEvent.class, this::onPlayerJoin);
-    }
-
-    @Override
-    protected void shutdown() {
-        storage.shutdown();
-    }
-
-    public SQLiteStorage getStorage() {
-        return storage;
-    }
-
-    public static Economy getEconomy() {
-        return economy;
-    }
-
-    public void onPlayerJoin(PlayerSetupConnectEvent e) {
-        try {
-            storage.insertOrUpdateName(e.getUuid(), e.getUsername(), Config.balance_starting);
-        } catch (SQLException ex) {
-            getLogger().at(Level.SEVERE).withCause(ex).log("Failed to create/update balance row on join for " + e.getUsername() + " (" + e.getUuid() + ")");
-        }
-    }
-
-    public static EconomyPlugin getInstance() {
-        return instance;
-    }
+package me.clicker.economy;
+
+import com.hypixel.hytale.server.core.event.events.player.PlayerDisconnectEvent;
+import com.hypixel.hytale.server.core.event.events.player.PlayerSetupConnectEvent;
+import com.hypixel.hytale.server.core.plugin.JavaPlugin;
+import com.hypixel.hytale.server.core.plugin.JavaPluginInit;
+import me.clicker.economy.commands.*;
+import me.clicker.economy.config.Config;
+import me.clicker.economy.config.Messages;
+import me.clicker.economy.jobs.JobDefinition;
+import me.clicker.economy.jobs.JobScheduler;
+import me.clicker.economy.stats.Stats;
+import me.clicker.economy.storage.AccountCache;
+import me.clicker.economy.storage.Ledger;
+import me.clicker.economy.storage.LogStorage;
+import me.clicker.economy.storage.SQLiteStorage;
+import me.clicker.economy.storage.Storage;
+
+import javax.annotation.Nonnull;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.logging.Level;
+
+public class EconomyPlugin extends JavaPlugin {
+    private static EconomyPlugin instance;
+    private static EconomyImpl economy;
+    private Storage storage;
+    private Ledger ledger;
+    private AccountCache accounts;
+    private JobScheduler jobs;
+
+    public EconomyPlugin(@Nonnull JavaPluginInit init) {
+        super(init);
+
+        instance = this;
+    }
+
+    @Override
+    protected void setup() {
+        var dataDir = getDataDirectory();
+
+        Config.load(dataDir);
+        Messages.load(dataDir);
+        saveResource(dataDir, "economy.jfc");
+        Stats.start(getLogger(), Config.stats_log_interval_minutes);
+
+        storage = switch (Config.storage_type.toLowerCase(Locale.ROOT)) {
+            case "sqlite" -> new SQLiteStorage(dataDir.resolve("economy.db"));
+            case "log" -> new LogStorage(dataDir.resolve("economy-log"), Config.storage_log_compact_mb * 1024 * 1024);
+            default -> throw new IllegalArgumentException("Unknown storage type: " + Config.storage_type);
+        };
+
+        storage.init();
+
+        ledger = new Ledger(dataDir.resolve("ledger"), Config.ledger_enabled, Config.ledger_segment_size_mb);
+        ledger.start();
+
+        accounts = new AccountCache(storage, ledger);
+        accounts.start();
+
+        if (storage instanceof SQLiteStorage sqlite) {
+            jobs = new JobScheduler(sqlite, accounts);
+            jobs.start();
+        } else if (Config.jobs.stream().anyMatch(JobDefinition::enabled)) {
+            getLogger().at(Level.WARNING).log("Economy jobs only run with storage type \"sqlite\", the jobs in config.yml are ignored");
+        }
+
+        economy = new EconomyImpl();
+
+        getCommandRegistry().registerCommand(new EcoCommand());
+        getCommandRegistry().registerCommand(new BalanceCommand());
+        getCommandRegistry().registerCommand(new BaltopCommand());
+        getCommandRegistry().registerCommand(new PayCommand());
+
+        getEventRegistry().register(PlayerSetupConnectEvent.class, this::onPlayerJoin);
+        getEventRegistry().register(PlayerDisconnectEvent.class, this::onPlayerQuit);
+    }
+
+    @Override
+    protected void shutdown() {
+        if (jobs != null) {
+            jobs.shutdown();
+        }
+
+        economy.shutdown();
+        accounts.shutdown();
+        ledger.shutdown();
+        storage.shutdown();
+        Stats.shutdown();
+    }
+
+    /**
+     * Copies a bundled file into the data directory, unless it is already there.
+     */
+    private void saveResource(Path dataDir, String name) {
+        var file = dataDir.resolve(name);
+
+        if (Files.exists(file)) {
+            return;
+        }
+
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(name)) {
+            if (in != null) {
+                Files.copy(in, file);
+            }
+        } catch (Exception e) {
+            getLogger().at(Level.WARNING).withCause(e).log("Failed to extract " + name);
+        }
+    }
+
+    public Storage getStorage() {
+        return storage;
+    }
+
+    public Ledger getLedger() {
+        return ledger;
+    }
+
+    public AccountCache getAccounts() {
+        return accounts;
+    }
+
+    public static Economy getEconomy() {
+        return economy;
+    }
+
+    public void onPlayerJoin(PlayerSetupConnectEvent e) {
+        accounts.join(e.getUuid(), e.getUsername(), Money.toMinor(Config.balance_starting));
+    }
+
+    public void onPlayerQuit(PlayerDisconnectEvent e) {
+        accounts.quit(e.getPlayerRef().getUuid());
+    }
+
+    public static EconomyPlugin getInstance() {
+        return instance;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package me.clicker.economy;
+
+import java.util.UUID;
+
+/**
+ * Represents one position on the balance leaderboard.
+ *
+ * @param rank       The 1-based leaderboard position.
+ * @param playerUUID The player's UUID.
+ * @param playerName The player's last known name (empty if unknown).
+ * @param balance    The player's balance.
+ */
+public record LeaderboardEntry(int rank, UUID playerUUID, String playerName, double balance) {}
@@ -0,0 +1,174 @@
+package me.clicker.economy;
+
+import com.hypixel.hytale.server.core.Message;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * A message from messages.yml, compiled once into styled segments.
+ *
+ * <p>Compiling resolves every {@code &} code up front, leaving literal text segments with their color and
+ * formatting, and slots for each {@link Placeholder}. Rendering only fills the slots in. Filled values are
+ * plain text in the style of their slot, so a value is never read as color codes. A placeholder that is
+ * not given a value is shown as written, as are unknown ones.</p>
+ */
+public final class MessageTemplate {
+    private static final Placeholder[] PLACEHOLDERS = Placeholder.values();
+
+    private final Segment[] segments;
+    private final Message cached;
+
+    private record Segment(String text, Placeholder slot, Color color, boolean bold, boolean italic) {}
+
+    private MessageTemplate(Segment[] segments, boolean hasSlots) {
+        this.segments = segments;
+        this.cached = hasSlots ? null : build(new String[PLACEHOLDERS.length]);
+    }
+
+    public static MessageTemplate compile(String template) {
+        var segments = new ArrayList<Segment>();
+        var hasSlots = false;
+
+        if (template == null) {
+            return new MessageTemplate(new Segment[0], false);
+        }
+
+        Color currentColor = null;
+        var bold = false;
+        var italic = false;
+        var buffer = new StringBuilder();
+
+        for (var i = 0; i < template.length(); i++) {
+            var c = template.charAt(i);
+
+            // Like ChatColor.toMessage, the character after an & is consumed even when it is not a code.
+            if (c == '&' && i + 1 < template.length()) {
+                var chatColor = ChatColor.getByChar(Character.toLowerCase(template.charAt(++i)));
+
+                if (chatColor != null) {
+                    if (!buffer.isEmpty()) {
+                        segments.add(new Segment(buffer.toString(), null, currentColor, bold, italic));
+                        buffer.setLength(0);
+                    }
+
+                    switch (chatColor) {
+                        case BOLD -> bold = true;
+                        case ITALIC -> italic = true;
+                        case RESET -> {
+                            currentColor = null;
+                            bold = false;
+                            italic = false;
+                        }
+                        default -> currentColor = chatColor.getColor();
+                    }
+
+                    continue;
+                }
+            }
+
+            if (c == '{') {
+                var placeholder = placeholderAt(template, i);
+
+                if (placeholder != null) {
+                    if (!buffer.isEmpty()) {
+                        segments.add(new Segment(buffer.toString(), null, currentColor, bold, italic));
+                        buffer.setLength(0);
+                    }
+
+                    segments.add(new Segment(placeholder.key(), placeholder, currentColor, bold, italic));
+                    hasSlots = true;
+                    i += placeholder.key().length() - 1;
+                    continue;
+                }
+            }
+
+            buffer.append(c);
+        }
+
+        if (!buffer.isEmpty()) {
+            segments.add(new Segment(buffer.toString(), null, currentColor, bold, italic));
+        }
+
+        return new MessageTemplate(segments.toArray(new Segment[0]), hasSlots);
+    }
+
+    /**
+     * Renders the message without filling any placeholders. A message without placeholders is built only
+     * once, so the result is shared and must not be modified.
+     */
+    public Message render() {
+        return cached != null ? cached : build(new String[PLACEHOLDERS.length]);
+    }
+
+    public Message render(Placeholder key, String value) {
+        var values = new String[PLACEHOLDERS.length];
+        values[key.ordinal()] = value;
+        return build(values);
+    }
+
+    public Message render(Placeholder key1, String value1, Placeholder key2, String value2) {
+        var values = new String[PLACEHOLDERS.length];
+        values[key1.ordinal()] = value1;
+        values[key2.ordinal()] = value2;
+        return build(values);
+    }
+
+    public Message render(Placeholder key1, String value1, Placeholder key2, String value2, Placeholder key3, String value3) {
+        var values = new String[PLACEHOLDERS.length];
+        values[key1.ordinal()] = value1;
+        values[key2.ordinal()] = value2;
+        values[key3.ordinal()] = value3;
+        return build(values);
+    }
+
+    public Message render(Map<Placeholder, String> values) {
+        var byOrdinal = new String[PLACEHOLDERS.length];
+
+        for (var entry : values.entrySet()) {
+            byOrdinal[entry.getKey().ordinal()] = entry.getValue();
+        }
+
+        return build(byOrdinal);
+    }
+
+    private Message build(String[] values) {
+        Message root = null;
+
+        for (var segment : segments) {
+            var text = segment.slot == null || values[segment.slot.ordinal()] == null ? segment.text : values[segment.slot.ordinal()];
+
+            if (text.isEmpty()) {
+                continue;
+            }
+
+            var part = Message.raw(text);
+
+            if (segment.color != null) {
+                part.color(segment.color);
+            }
+
+            part.bold(segment.bold);
+            part.italic(segment.italic);
+
+            if (root == null) {
+                root = part;
+            } else {
+                root.insert(part);
+            }
+        }
+
+        return root == null ? Message.raw("") : root;
+    }
+
+    private static Placeholder placeholderAt(String template, int index) {
+        for (var placeholder : PLACEHOLDERS) {
+            if (template.startsWith(placeholder.key(), index)) {
+                return placeholder;
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,56 @@
+package me.clicker.economy;
+
+import me.clicker.economy.config.Config;
+
+/**
+ * Conversions between currency amounts and the fixed-point minor units balances are kept in.
+ *
+ * <p>With two fraction digits a balance of {@code 12.34} is held as {@code 1234}. Storage and the
+ * account cache only ever do integer arithmetic on minor units, so repeated updates cannot drift;
+ * doubles appear only in the public {@link Economy} API and in player input.</p>
+ */
+public final class Money {
+    private static final long[] SCALES = {
+        1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L
+    };
+
+    private Money() {}
+
+    /**
+     * Gets the configured number of fraction digits, clamped to the supported range of 0 to 9.
+     */
+    public static int fractionDigits() {
+        return Math.max(0, Math.min(SCALES.length - 1, Config.currency_fraction_digits));
+    }
+
+    /**
+     * Gets the number of minor units in one whole unit of currency.
+     */
+    public static long scale() {
+        return SCALES[fractionDigits()];
+    }
+
+    /**
+     * Converts an amount to minor units, rounding to the nearest unit. Non-finite amounts become 0.
+     *
+     * @throws ArithmeticException if the amount does not fit in a long once scaled
+     */
+    public static long toMinor(double amount) {
+        if (!Double.isFinite(amount)) {
+            return 0;
+        }
+
+        var scaled = amount * scale();
+
+        // Math.round would silently clamp these to Long.MIN_VALUE or Long.MAX_VALUE.
+        if (Math.abs(scaled) >= 0x1p63) {
+            throw new ArithmeticException("Amount out of range: " + amount);
+        }
+
+        return Math.round(scaled);
+    }
+
+    public static double toMajor(long minor) {
+        return (double) minor / scale();
+    }
+}
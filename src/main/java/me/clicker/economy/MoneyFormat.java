@@ -0,0 +1,211 @@
+package me.clicker.economy;
+
+import java.util.Locale;
+
+/**
+ * Formats currency amounts for {@link Economy#format}.
+ *
+ * <p>The symbol, digit count and suffix thresholds are fixed when the format is created. Amounts that
+ * are a whole number of minor units, which is every balance, are written digit by digit into a
+ * per-thread buffer. Anything else falls back to {@link String#format}, which also defines the output:
+ * both paths produce identical strings.</p>
+ */
+final class MoneyFormat {
+    private static final long[] POWERS = {
+        1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L,
+        10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L, 10_000_000_000_000L, 100_000_000_000_000L,
+        1_000_000_000_000_000L, 10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L
+    };
+    private static final char[] SUFFIXES = {0, 'k', 'm', 'b', 't'};
+
+    /**
+     * Largest minor-unit amount written directly. Up to 15 significant digits, every decimal maps to a
+     * distinct double, so the double's shortest representation, which {@link String#format} rounds, is
+     * exactly that decimal.
+     */
+    private static final long MAX_EXACT = 999_999_999_999_999L;
+
+    private final String symbol;
+    private final int digits;
+    private final long scale;
+    private final ThreadLocal<char[]> buffers;
+
+    MoneyFormat(String symbol, int digits) {
+        this.symbol = String.valueOf(symbol);
+        this.digits = Math.max(0, digits);
+        this.scale = this.digits < 10 ? POWERS[this.digits] : 0;
+
+        var capacity = this.symbol.length() + 40;
+        this.buffers = ThreadLocal.withInitial(() -> new char[capacity]);
+    }
+
+    String format(double amount, boolean compact) {
+        if (!Double.isFinite(amount)) {
+            return symbol + "0";
+        }
+
+        var negative = amount < 0;
+        var value = Math.abs(amount);
+
+        if (scale == 0) {
+            return formatSlow(negative, value, compact);
+        }
+
+        var minor = Math.round(value * scale);
+
+        if (minor > MAX_EXACT || (double) minor / scale != value) {
+            return formatSlow(negative, value, compact);
+        }
+
+        var buffer = buffers.get();
+        var length = symbol.length();
+        symbol.getChars(0, length, buffer, 0);
+
+        if (negative) {
+            buffer[length++] = '-';
+        }
+
+        if (!compact) {
+            length = writeGrouped(buffer, length, minor / scale);
+            length = writeFraction(buffer, length, minor % scale);
+            return new String(buffer, 0, length);
+        }
+
+        var whole = minor / scale;
+        var tier = 0;
+
+        while (tier < SUFFIXES.length - 1 && whole >= POWERS[3 * (tier + 1)]) {
+            tier++;
+        }
+
+        var shown = minor;
+
+        if (tier > 0) {
+            var divisor = POWERS[3 * tier];
+
+            // The slow path formats value / divisor; only its shortest representation is m / (scale * divisor).
+            if (value / divisor != minor / ((double) scale * divisor)) {
+                return formatSlow(negative, value, true);
+            }
+
+            shown = minor / divisor;
+
+            if ((minor % divisor) * 2 >= divisor) {
+                shown++;
+            }
+        }
+
+        length = writeDigits(buffer, length, shown / scale);
+        length = writeFraction(buffer, length, shown % scale);
+
+        if (tier > 0) {
+            buffer[length++] = SUFFIXES[tier];
+        }
+
+        return new String(buffer, 0, length);
+    }
+
+    private int writeGrouped(char[] buffer, int at, long whole) {
+        var end = at + digitCount(whole);
+        end += (end - at - 1) / 3;
+
+        var pos = end;
+        var written = 0;
+
+        do {
+            if (written > 0 && written % 3 == 0) {
+                buffer[--pos] = ',';
+            }
+
+            buffer[--pos] = (char) ('0' + whole % 10);
+            whole /= 10;
+            written++;
+        } while (whole > 0);
+
+        return end;
+    }
+
+    private int writeDigits(char[] buffer, int at, long whole) {
+        var end = at + digitCount(whole);
+        var pos = end;
+
+        do {
+            buffer[--pos] = (char) ('0' + whole % 10);
+            whole /= 10;
+        } while (whole > 0);
+
+        return end;
+    }
+
+    /**
+     * Writes the fraction with all of its digits, or nothing when it is zero.
+     */
+    private int writeFraction(char[] buffer, int at, long fraction) {
+        if (fraction == 0) {
+            return at;
+        }
+
+        buffer[at] = '.';
+
+        for (var i = digits; i > 0; i--) {
+            buffer[at + i] = (char) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+
+        return at + digits + 1;
+    }
+
+    private static int digitCount(long value) {
+        var count = 1;
+
+        while (count < POWERS.length && value >= POWERS[count]) {
+            count++;
+        }
+
+        return count;
+    }
+
+    private String formatSlow(boolean negative, double value, boolean compact) {
+        if (!compact) {
+            var full = String.format(Locale.US, "%,." + digits + "f", value);
+
+            if (digits > 0) {
+                var zeros = "." + "0".repeat(digits);
+                if (full.endsWith(zeros)) {
+                    full = full.substring(0, full.length() - zeros.length());
+                }
+            }
+
+            return symbol + (negative ? "-" + full : full);
+        }
+
+        var suffix = "";
+        double shown = value;
+
+        if (value >= 1_000_000_000_000.0) {
+            shown = value / 1_000_000_000_000.0;
+            suffix = "t";
+        } else if (value >= 1_000_000_000.0) {
+            shown = value / 1_000_000_000.0;
+            suffix = "b";
+        } else if (value >= 1_000_000.0) {
+            shown = value / 1_000_000.0;
+            suffix = "m";
+        } else if (value >= 1_000.0) {
+            shown = value / 1_000.0;
+            suffix = "k";
+        }
+
+        var number = String.format(Locale.US, "%." + digits + "f", shown);
+
+        if (digits > 0) {
+            var zeros = "." + "0".repeat(digits);
+            if (number.endsWith(zeros)) {
+                number = number.substring(0, number.length() - zeros.length());
+            }
+        }
+
+        var result = number + suffix;
+        return symbol + (negative ? "-" + result : result);
+    }
+}
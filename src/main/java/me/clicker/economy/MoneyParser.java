@@ -0,0 +1,310 @@
+package me.clicker.economy;
+
+import me.clicker.economy.config.Config;
+
+/**
+ * Parses player-entered currency amounts, as accepted by {@link Economy#parseFormatted}.
+ *
+ * <p>Input is an optional {@code -}, an optional currency symbol, a number with optional grouping commas
+ * and an optional k/m/b/t suffix, with whitespace allowed around each part. The common form, plain digits
+ * with at most one decimal point, is read in a single pass straight from the {@link CharSequence}. Other
+ * number syntax {@link Double#parseDouble} understands, such as exponents, goes through the original
+ * string-based parser, so both accept and reject exactly the same inputs.</p>
+ */
+public final class MoneyParser {
+    private static final long[] POWERS = {
+        1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L,
+        10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L, 10_000_000_000_000L, 100_000_000_000_000L,
+        1_000_000_000_000_000L, 10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L
+    };
+    private static final double[] DOUBLE_POWERS = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+
+    /**
+     * Most significant digits read directly. Below 2^53 the digits and the power of ten dividing them are
+     * both exact doubles, so a single division rounds correctly, just like {@link Double#parseDouble}.
+     */
+    private static final int MAX_DIGITS = 15;
+
+    /**
+     * Whole amounts of minor units below this are exact in {@link #parseMinor}. The double path rounds at most
+     * three times, which stays under half a unit below 2^50, so it rounds back to the same value.
+     */
+    private static final long EXACT_UNITS = 1L << 50;
+
+    /**
+     * Layout of a scanned amount packed into a long: the significant digits in the low 50 bits, then the
+     * count of fraction digits, the suffix's power of a thousand and the sign.
+     */
+    private static final int DIGITS_SHIFT = 50;
+    private static final int SUFFIX_SHIFT = 55;
+    private static final int SIGN_SHIFT = 58;
+    private static final long MANTISSA_MASK = (1L << DIGITS_SHIFT) - 1;
+    private static final long UNSCANNED = -1;
+
+    private MoneyParser() {}
+
+    /**
+     * Parses an amount in whole units of currency.
+     *
+     * @throws NumberFormatException if the input is invalid
+     */
+    public static double parse(CharSequence input) {
+        var scan = scan(input);
+
+        if (scan == UNSCANNED) {
+            return parseSlow(input);
+        }
+
+        var mantissa = scan & MANTISSA_MASK;
+        var digits = fractionDigits(scan);
+        var value = digits == 0 ? (double) mantissa : mantissa / DOUBLE_POWERS[digits];
+        value *= POWERS[exponent(scan)];
+        return negative(scan) ? -value : value;
+    }
+
+    /**
+     * Parses an amount straight into minor units. Always gives {@code Money.toMinor(parse(input))}, so commands
+     * move exactly what the {@code double} API would for the same input, but skips the double when no rounding
+     * is needed.
+     *
+     * @throws NumberFormatException if the input is invalid
+     */
+    public static long parseMinor(CharSequence input) {
+        var scan = scan(input);
+
+        if (scan != UNSCANNED) {
+            var mantissa = scan & MANTISSA_MASK;
+            var shift = exponent(scan) + Money.fractionDigits() - fractionDigits(scan);
+
+            if (shift >= 0 && shift < POWERS.length && mantissa < EXACT_UNITS / POWERS[shift]) {
+                var units = mantissa * POWERS[shift];
+                return negative(scan) ? -units : units;
+            }
+        }
+
+        return toMinor(parse(input));
+    }
+
+    private static long toMinor(double amount) {
+        try {
+            return Money.toMinor(amount);
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException(e.getMessage());
+        }
+    }
+
+    private static int fractionDigits(long scan) {
+        return (int) (scan >>> DIGITS_SHIFT) & 0x1F;
+    }
+
+    private static int exponent(long scan) {
+        return 3 * ((int) (scan >>> SUFFIX_SHIFT) & 0x7);
+    }
+
+    private static boolean negative(long scan) {
+        return (scan >>> SIGN_SHIFT) != 0;
+    }
+
+    /**
+     * Reads the common form of an amount, packed as described at {@link #DIGITS_SHIFT}. Returns
+     * {@link #UNSCANNED} when the input needs the full parser, either because it uses other number syntax
+     * or because it is invalid.
+     */
+    private static long scan(CharSequence input) {
+        if (input == null) {
+            return UNSCANNED;
+        }
+
+        var start = skipSpace(input, 0, input.length());
+        var end = trimSpace(input, start, input.length());
+        var negative = false;
+
+        if (start < end && input.charAt(start) == '-') {
+            negative = true;
+            start = skipSpace(input, start + 1, end);
+        }
+
+        var symbol = Config.currency_symbol;
+
+        if (symbol != null && !symbol.isBlank() && regionMatches(input, start, end, symbol)) {
+            start = skipSpace(input, start + symbol.length(), end);
+        }
+
+        if (start == end) {
+            return UNSCANNED;
+        }
+
+        var suffix = switch (Character.toLowerCase(input.charAt(end - 1))) {
+            case 'k' -> 1;
+            case 'm' -> 2;
+            case 'b' -> 3;
+            case 't' -> 4;
+            default -> 0;
+        };
+
+        if (suffix > 0) {
+            end = trimSpace(input, start, end - 1);
+        }
+
+        // Commas are dropped wherever they are, then only leading and trailing whitespace may remain.
+        var mantissa = 0L;
+        var digits = 0;
+        var significant = 0;
+        var seenDigit = false;
+        var seenPoint = false;
+        var trailing = false;
+
+        for (var i = start; i < end; i++) {
+            var c = input.charAt(i);
+
+            if (c == ',') {
+                continue;
+            }
+
+            if (c <= ' ') {
+                if (seenDigit || seenPoint) {
+                    trailing = true;
+                }
+
+                continue;
+            }
+
+            if (trailing) {
+                return UNSCANNED;
+            }
+
+            if (c == '.') {
+                if (seenPoint) {
+                    return UNSCANNED;
+                }
+
+                seenPoint = true;
+            } else if (c >= '0' && c <= '9') {
+                seenDigit = true;
+
+                if (significant == 0 && c == '0') {
+                    if (seenPoint) {
+                        digits++;
+                    }
+
+                    continue;
+                }
+
+                if (++significant > MAX_DIGITS) {
+                    return UNSCANNED;
+                }
+
+                mantissa = mantissa * 10 + (c - '0');
+
+                if (seenPoint) {
+                    digits++;
+                }
+            } else {
+                return UNSCANNED;
+            }
+        }
+
+        if (!seenDigit || digits >= DOUBLE_POWERS.length) {
+            return UNSCANNED;
+        }
+
+        return mantissa | (long) digits << DIGITS_SHIFT | (long) suffix << SUFFIX_SHIFT | (negative ? 1L : 0L) << SIGN_SHIFT;
+    }
+
+    private static int skipSpace(CharSequence input, int from, int end) {
+        while (from < end && input.charAt(from) <= ' ') {
+            from++;
+        }
+
+        return from;
+    }
+
+    private static int trimSpace(CharSequence input, int start, int end) {
+        while (end > start && input.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        return end;
+    }
+
+    private static boolean regionMatches(CharSequence input, int from, int end, String prefix) {
+        if (end - from < prefix.length()) {
+            return false;
+        }
+
+        for (var i = 0; i < prefix.length(); i++) {
+            if (input.charAt(from + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * The original string-based parser, which accepts everything {@link Double#parseDouble} does. Package-private
+     * so that tests can check {@link #parse} against it.
+     */
+    static double parseSlow(CharSequence input) {
+        if (input == null) {
+            throw new NumberFormatException("null");
+        }
+
+        var s = input.toString().trim();
+
+        if (s.isEmpty()) {
+            throw new NumberFormatException("empty");
+        }
+
+        var negative = false;
+
+        if (s.startsWith("-")) {
+            negative = true;
+            s = s.substring(1).trim();
+
+            if (s.isEmpty()) {
+                throw new NumberFormatException("just '-'");
+            }
+        }
+
+        var symbol = Config.currency_symbol;
+
+        if (symbol != null && !symbol.isBlank() && s.startsWith(symbol)) {
+            s = s.substring(symbol.length()).trim();
+
+            if (s.isEmpty()) {
+                throw new NumberFormatException("missing number after symbol");
+            }
+        }
+
+        var multiplier = 1.0;
+        var last = Character.toLowerCase(s.charAt(s.length() - 1));
+
+        if (last == 'k' || last == 'm' || last == 'b' || last == 't') {
+            s = s.substring(0, s.length() - 1).trim();
+
+            if (s.isEmpty()) {
+                throw new NumberFormatException("missing number before suffix");
+            }
+
+            multiplier = switch (last) {
+                case 'k' -> 1_000.0;
+                case 'm' -> 1_000_000.0;
+                case 'b' -> 1_000_000_000.0;
+                case 't' -> 1_000_000_000_000.0;
+                default -> 1.0;
+            };
+        }
+
+        s = s.replace(",", "").trim();
+
+        if (s.isEmpty()) {
+            throw new NumberFormatException("empty after cleanup");
+        }
+
+        var value = Double.parseDouble(s) * multiplier;
+        return negative ? -value : value;
+    }
+}
@@ -0,0 +1,35 @@
+package me.clicker.economy;
+
+/**
+ * A value that can be filled into a {@link MessageTemplate}, written as {@code {name}} in messages.yml.
+ */
+public enum Placeholder {
+    PLAYER,
+    AMOUNT,
+    BALANCE,
+    TOTAL,
+    RANK,
+    PAGE,
+    PAGES,
+    TIME,
+    TYPE,
+    ACTOR,
+    COUNTERPARTY,
+    OPERATION,
+    COUNT,
+    RATE,
+    P50,
+    P99,
+    MAX,
+    UPTIME,
+    SKIPPED;
+
+    private final String key = "{" + name().toLowerCase(java.util.Locale.ROOT) + "}";
+
+    /**
+     * Gets the placeholder as written in a template, such as {@code {player}}.
+     */
+    public String key() {
+        return key;
+    }
+}
@@ -1,105 +1,90 @@
-package me.clicker.economy.commands;
-
-import com.hypixel.hytale.logger.HytaleLogger;
-import com.hypixel.hytale.server.core.command.system.AbstractCommand;
-import com.hypixel.hytale.server.core.command.system.CommandContext;
-
-import javax.annotation.Nonnull;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.List;
-import java.util.concurrent.CompletableFuture;
-
-import com.hypixel.hytale.server.core.command.system.arguments.system.OptionalArg;
-import com.hypixel.hytale.server.core.command.system.arguments.types.ArgTypes;
-import com.hypixel.hytale.server.core.universe.PlayerRef;
-import me.clicker.economy.*;
-import me.clicker.economy.config.Config;
-import me.clicker.economy.config.Messages;
-import me.clicker.economy.storage.SQLiteStorage;
-
-public final class BaltopCommand extends AbstractCommand {
-    private static final DateTimeFormatter TS = DateTimeFormatter.ofPattern("M/d/yy h:mm a");
-    private final HytaleLogger logger;
-    private final Economy economy;
-    private final SQLiteStorage storage;
-    private final OptionalArg<Integer> pageArg;
-
-    public BaltopCommand() {
-        super("baltop", "Show top balances");
-
-        this.logger = EconomyPlugin.getInstance().getLogger();
-        this.economy = EconomyPlugin.getInstance().getEconomy();
-        this.storage = EconomyPlugin.getInstance().getStorage();
-        pageArg = withOptionalArg("page", "Page number of the balance leaderboard", ArgTypes.INTEGER);
-    }
-
-    @Override
-    protected CompletableFuture<Void> execute(@Nonnull CommandContext ctx) {
-        var sender = ctx.sender();
-
-        if (!sender.hasPermission("economy.baltop")) {
-            sender.sendMessage(ChatColor.toMessage(Messages.baltop_no_permission));
-            return CompletableFuture.completedFuture(null);
-        }
-
-        PlayerRef fromPlayer = null;
-
-        if (ctx.isPlayer()) {
-            fromPlayer = Util.getPlayerRef(ctx.sender());
-        }
-
-        var perPage = Config.baltop_page_size;
-        int rowCount;
-
-        try {
-            rowCount = storage.countRows();
-        } catch (Exception e) {
-            sender.sendMessage(ChatColor.toMessage(Messages.internal_error));
-            logger.at(java.util.logging.Level.SEVERE).withCause(e).log(fromPlayer == null ? "/baltop failed: from=CONSOLE" : "/baltop failed: fromUUID=" + fromPlayer.getUuid() + ", fromName=" + fromPlayer.getUsername());
-            return CompletableFuture.completedFuture(null);
-        }
-
-        var pages = Math.max(1, (rowCount + perPage - 1) / perPage);
-        var page = pageArg.provided(ctx) ? pageArg.get(ctx) : 1;
-
-        if (page < 1) {
-            page = 1;
-        }
-
-        if (page > pages) {
-            page = pages;
-        }
-
-        var offset = (page - 1) * perPage;
-        List<SQLiteStorage.Row> top;
-
-        try {
-            top = storage.getTop(perPage, offset);
-        } catch (Exception e) {
-            sender.sendMessage(ChatColor.toMessage(Messages.internal_error));
-            logger.at(java.util.logging.Level.SEVERE).withCause(e).log(fromPlayer == null ? "/baltop failed: from=CONSOLE, perPage=" + perPage + ", offset=" + offset : "/baltop failed: fromUUID=" + fromPlayer.getUuid() + ", fromName=" + fromPlayer.getUsername() + ", perPage=" + perPage + ", offset=" + offset);
-            return CompletableFuture.completedFuture(null);
-        }
-
-        double total;
-
-        try {
-            total = storage.totalBalance();
-        } catch (Exception e) {
-            sender.sendMessage(ChatColor.toMessage(Messages.internal_error));
-            logger.at(java.util.logging.Level.SEVERE).withCause(e).log(fromPlayer == null ? "/baltop failed: from=CONSOLE" : "/baltop failed: fromUUID=" + fromPlayer.getUuid() + ", fromName=" + fromPlayer.getUsername());
-            return CompletableFuture.completedFuture(null);
-        }
-
-        var msg = ChatColor.toMessage(Messages.baltop_header.replace("{time}", LocalDateTime.now().format(TS)).replace("{page}", String.valueOf(page)).replace("{pages}", String.valueOf(pages)).replace("{total}", economy.format(total, false)));
-
-        for (var i = 0; i < top.size(); i++) {
-            var record = top.get(i);
-            msg.insert(ChatColor.toMessage("\n" + Messages.baltop_record.replace("{rank}", String.valueOf(offset + i + 1)).replace("{player}", record.name()).replace("{balance}", economy.format(record.balance(), false))));
-        }
-
-        sender.sendMessage(msg);
-        return CompletableFuture.completedFuture(null);
-    }
+package me.clicker.economy.commands;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.command.system.CommandContext;
+
+import javax.annotation.Nonnull;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+
+import com.hypixel.hytale.server.core.command.system.arguments.system.OptionalArg;
+import com.hypixel.hytale.server.core.command.system.arguments.types.ArgTypes;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import me.clicker.economy.*;
+import me.clicker.economy.config.Config;
+import me.clicker.economy.config.Messages;
+import me.clicker.economy.stats.Operation;
+import me.clicker.economy.storage.AccountCache;
+
+public final class BaltopCommand extends InstrumentedCommand {
+    private static final DateTimeFormatter TS = DateTimeFormatter.ofPattern("M/d/yy h:mm a");
+    private final HytaleLogger logger;
+    private final Economy economy;
+    private final AccountCache accounts;
+    private final OptionalArg<Integer> pageArg;
+
+    public BaltopCommand() {
+        super("baltop", "Show top balances", Operation.BALTOP);
+
+        this.logger = EconomyPlugin.getInstance().getLogger();
+        this.economy = EconomyPlugin.getInstance().getEconomy();
+        this.accounts = EconomyPlugin.getInstance().getAccounts();
+        pageArg = withOptionalArg("page", "Page number of the balance leaderboard", ArgTypes.INTEGER);
+    }
+
+    @Override
+    protected Outcome run(@Nonnull CommandContext ctx) {
+        var sender = ctx.sender();
+
+        if (!sender.hasPermission("economy.baltop")) {
+            sender.sendMessage(Messages.baltop_no_permission.render());
+            return Outcome.DENIED;
+        }
+
+        PlayerRef fromPlayer = null;
+
+        if (ctx.isPlayer()) {
+            fromPlayer = Util.getPlayerRef(ctx.sender());
+        }
+
+        var perPage = Config.baltop_page_size;
+        var rowCount = accounts.getAccountCount();
+        var pages = Math.max(1, (rowCount + perPage - 1) / perPage);
+        var page = pageArg.provided(ctx) ? pageArg.get(ctx) : 1;
+
+        if (page < 1) {
+            page = 1;
+        }
+
+        if (page > pages) {
+            page = pages;
+        }
+
+        var offset = (page - 1) * perPage;
+        var top = accounts.getTop(perPage, offset);
+
+        var total = Money.toMajor(accounts.getMoneySupply());
+
+        var msg = Messages.baltop_header.render(Map.of(Placeholder.TIME, LocalDateTime.now().format(TS), Placeholder.PAGE, String.valueOf(page), Placeholder.PAGES, String.valueOf(pages), Placeholder.TOTAL, economy.format(total, false)));
+
+        for (var i = 0; i < top.size(); i++) {
+            var record = top.get(i);
+            msg.insert(Message.raw("\n"));
+            msg.insert(Messages.baltop_record.render(Placeholder.RANK, String.valueOf(offset + i + 1), Placeholder.PLAYER, record.name(), Placeholder.BALANCE, economy.format(Money.toMajor(record.balance()), false)));
+        }
+
+        if (fromPlayer != null) {
+            var rank = accounts.getRank(fromPlayer.getUuid());
+
+            if (rank > 0) {
+                msg.insert(Message.raw("\n"));
+                msg.insert(Messages.baltop_rank.render(Placeholder.RANK, String.valueOf(rank), Placeholder.BALANCE, economy.format(economy.getBalance(fromPlayer.getUuid()), false)));
+            }
+        }
+
+        sender.sendMessage(msg);
+        return Outcome.SUCCESS;
+    }
 }
\ No newline at end of file
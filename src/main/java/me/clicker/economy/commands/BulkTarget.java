@@ -0,0 +1,61 @@
+package me.clicker.economy.commands;
+
+import com.hypixel.hytale.server.core.universe.Universe;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.UUID;
+
+import me.clicker.economy.config.Config;
+import me.clicker.economy.storage.AccountCache;
+import me.clicker.economy.storage.Storage;
+
+/**
+ * The targets of {@code /eco give|take|set} that name many accounts instead of one player.
+ */
+enum BulkTarget {
+    ALL("*"),
+    ONLINE("@online");
+
+    private final String token;
+
+    BulkTarget(String token) {
+        this.token = token;
+    }
+
+    /**
+     * Gets the bulk target written as {@code target}, or null if it names a single player.
+     */
+    static BulkTarget of(String target) {
+        for (var bulk : values()) {
+            if (bulk.token.equalsIgnoreCase(target)) {
+                return bulk;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Applies a change to every targeted account, {@code bulk.chunk_size} accounts per transaction.
+     */
+    AccountCache.BulkResult apply(AccountCache accounts, UUID actor, Storage.Adjustment adjustment, long amount) throws SQLException {
+        return switch (this) {
+            case ALL -> accounts.adjustAll(actor, adjustment, amount, Config.bulk_chunk_size);
+            case ONLINE -> {
+                var uuids = new ArrayList<UUID>();
+
+                for (var player : Universe.get().getPlayers()) {
+                    uuids.add(player.getUuid());
+                }
+
+                yield accounts.adjust(actor, adjustment, amount, uuids, Config.bulk_chunk_size);
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return token;
+    }
+}
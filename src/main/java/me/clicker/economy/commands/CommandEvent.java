@@ -0,0 +1,26 @@
+package me.clicker.economy.commands;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for one execution of an economy command.
+ */
+@Name("me.clicker.economy.Command")
+@Label("Economy Command")
+@Category("Economy")
+@Description("An economy command, from permission check to reply")
+@StackTrace(false)
+final class CommandEvent extends jdk.jfr.Event {
+    @Label("Command")
+    String command;
+
+    @Label("Sender")
+    String sender;
+
+    @Label("Outcome")
+    String outcome;
+}
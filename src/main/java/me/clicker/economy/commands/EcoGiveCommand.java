@@ -1,109 +1,147 @@
-package me.clicker.economy.commands;
-
-import com.hypixel.hytale.logger.HytaleLogger;
-import com.hypixel.hytale.server.core.NameMatching;
-import com.hypixel.hytale.server.core.command.system.AbstractCommand;
-import com.hypixel.hytale.server.core.command.system.CommandContext;
-import com.hypixel.hytale.server.core.command.system.arguments.system.RequiredArg;
-import com.hypixel.hytale.server.core.command.system.arguments.types.ArgTypes;
-
-import javax.annotation.Nonnull;
-import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
-import java.util.logging.Level;
-
-import com.hypixel.hytale.server.core.universe.PlayerRef;
-import com.hypixel.hytale.server.core.universe.Universe;
-import me.clicker.economy.*;
-import me.clicker.economy.config.Messages;
-import me.clicker.economy.storage.SQLiteStorage;
-
-public final class EcoGiveCommand extends AbstractCommand {
-    private final HytaleLogger logger;
-    private final Economy economy;
-    private final SQLiteStorage storage;
-    private final RequiredArg<String> playerArg;
-    private final RequiredArg<String> amountArg;
-
-    public EcoGiveCommand() {
-        super("give", "Give money to a player");
-
-        this.logger = EconomyPlugin.getInstance().getLogger();
-        this.economy = EconomyPlugin.getInstance().getEconomy();
-        this.storage = EconomyPlugin.getInstance().getStorage();
-        playerArg = withRequiredArg("player", "Target player", ArgTypes.STRING);
-        amountArg = withRequiredArg("amount", "Amount", ArgTypes.STRING);
-    }
-
-    @Override
-    protected CompletableFuture<Void> execute(@Nonnull CommandContext ctx) {
-        var sender = ctx.sender();
-
-        if (!sender.hasPermission("economy.eco")) {
-            sender.sendMessage(ChatColor.toMessage(Messages.eco_no_permission));
-            return CompletableFuture.completedFuture(null);
-        }
-
-        PlayerRef fromPlayer = null;
-
-        if (ctx.isPlayer()) {
-            fromPlayer = Util.getPlayerRef(ctx.sender());
-        }
-
-        UUID targetUUID;
-        var targetName = this.playerArg.get(ctx);
-        var targetPlayer = Universe.get().getPlayerByUsername(targetName, NameMatching.EXACT_IGNORE_CASE);
-        var isOffline = targetPlayer == null;
-
-        if (isOffline) {
-            try {
-                var row = storage.getRow(targetName);
-
-                if (row == null) {
-                    sender.sendMessage(ChatColor.toMessage(Messages.player_not_found));
-                    return CompletableFuture.completedFuture(null);
-                }
-
-                targetName = row.name();
-                targetUUID = row.uuid();
-            } catch (Exception e) {
-                sender.sendMessage(ChatColor.toMessage(Messages.internal_error));
-                logger.at(Level.SEVERE).withCause(e).log(fromPlayer == null ? "/eco give failed: from=CONSOLE, targetName=" + targetName : "/eco give failed: fromUUID=" + fromPlayer.getUuid() + ", fromName=" + fromPlayer.getUsername() + ", targetName=" + targetName);
-                return CompletableFuture.completedFuture(null);
-            }
-        } else {
-            targetName = targetPlayer.getUsername();
-            targetUUID = targetPlayer.getUuid();
-        }
-
-        var amountRaw = amountArg.get(ctx);
-        double amount;
-
-        try {
-            amount = economy.parseFormatted(amountRaw);
-        } catch (Exception e) {
-            sender.sendMessage(ChatColor.toMessage(Messages.amount_invalid));
-            return CompletableFuture.completedFuture(null);
-        }
-
-        if (amount <= 0) {
-            sender.sendMessage(ChatColor.toMessage(Messages.must_be_positive));
-            return CompletableFuture.completedFuture(null);
-        }
-
-        try {
-            var balance = storage.give(targetUUID, targetName, amount);
-
-            sender.sendMessage(ChatColor.toMessage(Messages.eco_give_sender.replace("{player}", targetName).replace("{amount}", economy.format(amount, false)).replace("{balance}", economy.format(balance, false))));
-
-            if (!isOffline) {
-                targetPlayer.sendMessage(ChatColor.toMessage(Messages.eco_give_target.replace("{player}", fromPlayer == null ? "CONSOLE" : fromPlayer.getUsername()).replace("{amount}", economy.format(amount, false)).replace("{balance}", economy.format(balance, false))));
-            }
-        } catch (Exception e) {
-            sender.sendMessage(ChatColor.toMessage(Messages.internal_error));
-            logger.at(Level.SEVERE).withCause(e).log(fromPlayer == null ? "/eco give failed: from=CONSOLE, targetUUID=" + targetUUID + ", targetName=" + targetName + ", amount=" + amount : "/eco give failed: fromUUID=" + fromPlayer.getUuid() + ", fromName=" + fromPlayer.getUsername() + ", targetUUID=" + targetUUID + ", targetName=" + targetName + ", amount=" + amount);
-        }
-
-        return CompletableFuture.completedFuture(null);
-    }
+package me.clicker.economy.commands;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.server.core.NameMatching;
+import com.hypixel.hytale.server.core.command.system.CommandContext;
+import com.hypixel.hytale.server.core.command.system.arguments.system.RequiredArg;
+import com.hypixel.hytale.server.core.command.system.arguments.types.ArgTypes;
+
+import javax.annotation.Nonnull;
+import java.util.UUID;
+import java.util.logging.Level;
+
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.Universe;
+import me.clicker.economy.*;
+import me.clicker.economy.config.Messages;
+import me.clicker.economy.stats.Operation;
+import me.clicker.economy.stats.Stats;
+import me.clicker.economy.storage.AccountCache;
+import me.clicker.economy.storage.Storage;
+
+public final class EcoGiveCommand extends InstrumentedCommand {
+    private final HytaleLogger logger;
+    private final Economy economy;
+    private final AccountCache accounts;
+    private final RequiredArg<String> playerArg;
+    private final RequiredArg<String> amountArg;
+
+    public EcoGiveCommand() {
+        super("give", "Give money to a player", Operation.ECO_GIVE);
+
+        this.logger = EconomyPlugin.getInstance().getLogger();
+        this.economy = EconomyPlugin.getInstance().getEconomy();
+        this.accounts = EconomyPlugin.getInstance().getAccounts();
+        playerArg = withRequiredArg("player", "Target player", ArgTypes.STRING);
+        amountArg = withRequiredArg("amount", "Amount", ArgTypes.STRING);
+    }
+
+    @Override
+    protected Outcome run(@Nonnull CommandContext ctx) {
+        var sender = ctx.sender();
+
+        if (!sender.hasPermission("economy.eco")) {
+            sender.sendMessage(Messages.eco_no_permission.render());
+            return Outcome.DENIED;
+        }
+
+        PlayerRef fromPlayer = null;
+
+        if (ctx.isPlayer()) {
+            fromPlayer = Util.getPlayerRef(ctx.sender());
+        }
+
+        var bulk = BulkTarget.of(playerArg.get(ctx));
+
+        if (bulk != null) {
+            return runBulk(ctx, fromPlayer, bulk);
+        }
+
+        UUID targetUUID;
+        var targetName = this.playerArg.get(ctx);
+        var targetPlayer = Universe.get().getPlayerByUsername(targetName, NameMatching.EXACT_IGNORE_CASE);
+        var isOffline = targetPlayer == null;
+
+        if (isOffline) {
+            try {
+                var row = accounts.getRow(targetName);
+
+                if (row == null) {
+                    sender.sendMessage(Messages.player_not_found.render());
+                    return Outcome.INVALID;
+                }
+
+                targetName = row.name();
+                targetUUID = row.uuid();
+            } catch (Exception e) {
+                sender.sendMessage(Messages.internal_error.render());
+                logger.at(Level.SEVERE).withCause(e).log(fromPlayer == null ? "/eco give failed: from=CONSOLE, targetName=" + targetName : "/eco give failed: fromUUID=" + fromPlayer.getUuid() + ", fromName=" + fromPlayer.getUsername() + ", targetName=" + targetName);
+                return Outcome.ERROR;
+            }
+        } else {
+            targetName = targetPlayer.getUsername();
+            targetUUID = targetPlayer.getUuid();
+        }
+
+        var amountRaw = amountArg.get(ctx);
+        long amount;
+
+        try {
+            amount = MoneyParser.parseMinor(amountRaw);
+        } catch (Exception e) {
+            sender.sendMessage(Messages.amount_invalid.render());
+            return Outcome.INVALID;
+        }
+
+        if (amount <= 0) {
+            sender.sendMessage(Messages.must_be_positive.render());
+            return Outcome.INVALID;
+        }
+
+        try {
+            var balance = Money.toMajor(accounts.give(fromPlayer == null ? null : fromPlayer.getUuid(), targetUUID, targetName, amount));
+
+            sender.sendMessage(Messages.eco_give_sender.render(Placeholder.PLAYER, targetName, Placeholder.AMOUNT, economy.format(Money.toMajor(amount), false), Placeholder.BALANCE, economy.format(balance, false)));
+
+            if (!isOffline) {
+                targetPlayer.sendMessage(Messages.eco_give_target.render(Placeholder.PLAYER, fromPlayer == null ? "CONSOLE" : fromPlayer.getUsername(), Placeholder.AMOUNT, economy.format(Money.toMajor(amount), false), Placeholder.BALANCE, economy.format(balance, false)));
+            }
+        } catch (Exception e) {
+            sender.sendMessage(Messages.internal_error.render());
+            logger.at(Level.SEVERE).withCause(e).log(fromPlayer == null ? "/eco give failed: from=CONSOLE, targetUUID=" + targetUUID + ", targetName=" + targetName + ", amount=" + Money.toMajor(amount) : "/eco give failed: fromUUID=" + fromPlayer.getUuid() + ", fromName=" + fromPlayer.getUsername() + ", targetUUID=" + targetUUID + ", targetName=" + targetName + ", amount=" + Money.toMajor(amount));
+            return Outcome.ERROR;
+        }
+
+        return Outcome.SUCCESS;
+    }
+
+    private Outcome runBulk(CommandContext ctx, PlayerRef fromPlayer, BulkTarget target) {
+        var sender = ctx.sender();
+        long amount;
+
+        try {
+            amount = MoneyParser.parseMinor(amountArg.get(ctx));
+        } catch (Exception e) {
+            sender.sendMessage(Messages.amount_invalid.render());
+            return Outcome.INVALID;
+        }
+
+        if (amount <= 0) {
+            sender.sendMessage(Messages.must_be_positive.render());
+            return Outcome.INVALID;
+        }
+
+        var start = System.nanoTime();
+
+        try {
+            var result = target.apply(accounts, fromPlayer == null ? null : fromPlayer.getUuid(), Storage.Adjustment.GIVE, amount);
+            sender.sendMessage(Messages.eco_give_bulk.render(Placeholder.AMOUNT, economy.format(Money.toMajor(amount), false), Placeholder.COUNT, String.valueOf(result.changed()), Placeholder.TIME, Stats.formatDuration(System.nanoTime() - start)));
+        } catch (Exception e) {
+            sender.sendMessage(Messages.internal_error.render());
+            logger.at(Level.SEVERE).withCause(e).log(fromPlayer == null ? "/eco give failed: from=CONSOLE, target=" + target + ", amount=" + Money.toMajor(amount) : "/eco give failed: fromUUID=" + fromPlayer.getUuid() + ", fromName=" + fromPlayer.getUsername() + ", target=" + target + ", amount=" + Money.toMajor(amount));
+            return Outcome.ERROR;
+        }
+
+        return Outcome.SUCCESS;
+    }
 }
\ No newline at end of file
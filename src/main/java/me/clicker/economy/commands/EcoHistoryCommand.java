@@ -0,0 +1,124 @@
+package me.clicker.economy.commands;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.NameMatching;
+import com.hypixel.hytale.server.core.command.system.CommandContext;
+import com.hypixel.hytale.server.core.command.system.arguments.system.OptionalArg;
+import com.hypixel.hytale.server.core.command.system.arguments.system.RequiredArg;
+import com.hypixel.hytale.server.core.command.system.arguments.types.ArgTypes;
+
+import javax.annotation.Nonnull;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.Map;
+import java.util.logging.Level;
+
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.Universe;
+import me.clicker.economy.*;
+import me.clicker.economy.config.Config;
+import me.clicker.economy.config.Messages;
+import me.clicker.economy.stats.Operation;
+import me.clicker.economy.storage.AccountCache;
+import me.clicker.economy.storage.Ledger;
+
+public final class EcoHistoryCommand extends InstrumentedCommand {
+    private static final DateTimeFormatter TS = DateTimeFormatter.ofPattern("M/d/yy h:mm a").withZone(ZoneId.systemDefault());
+    private final HytaleLogger logger;
+    private final Economy economy;
+    private final AccountCache accounts;
+    private final Ledger ledger;
+    private final RequiredArg<String> playerArg;
+    private final OptionalArg<Integer> pageArg;
+
+    public EcoHistoryCommand() {
+        super("history", "Show a player's balance history", Operation.ECO_HISTORY);
+
+        this.logger = EconomyPlugin.getInstance().getLogger();
+        this.economy = EconomyPlugin.getInstance().getEconomy();
+        this.accounts = EconomyPlugin.getInstance().getAccounts();
+        this.ledger = EconomyPlugin.getInstance().getLedger();
+        playerArg = withRequiredArg("player", "Target player", ArgTypes.STRING);
+        pageArg = withOptionalArg("page", "Page number of the history", ArgTypes.INTEGER);
+    }
+
+    @Override
+    protected Outcome run(@Nonnull CommandContext ctx) {
+        var sender = ctx.sender();
+
+        if (!sender.hasPermission("economy.eco")) {
+            sender.sendMessage(Messages.eco_no_permission.render());
+            return Outcome.DENIED;
+        }
+
+        PlayerRef fromPlayer = null;
+
+        if (ctx.isPlayer()) {
+            fromPlayer = Util.getPlayerRef(ctx.sender());
+        }
+
+        UUID targetUUID;
+        var targetName = this.playerArg.get(ctx);
+        var targetPlayer = Universe.get().getPlayerByUsername(targetName, NameMatching.EXACT_IGNORE_CASE);
+
+        try {
+            if (targetPlayer == null) {
+                var row = accounts.getRow(targetName);
+
+                if (row == null) {
+                    sender.sendMessage(Messages.player_not_found.render());
+                    return Outcome.INVALID;
+                }
+
+                targetName = row.name();
+                targetUUID = row.uuid();
+            } else {
+                targetName = targetPlayer.getUsername();
+                targetUUID = targetPlayer.getUuid();
+            }
+
+            var perPage = Math.max(1, Config.ledger_history_page_size);
+            var count = ledger.count(targetUUID);
+
+            if (count == 0) {
+                sender.sendMessage(Messages.eco_history_empty.render(Placeholder.PLAYER, targetName));
+                return Outcome.SUCCESS;
+            }
+
+            var pages = (count + perPage - 1) / perPage;
+            var page = Math.min(Math.max(1, pageArg.provided(ctx) ? pageArg.get(ctx) : 1), pages);
+            var entries = ledger.history(targetUUID, (page - 1) * perPage, perPage);
+
+            var msg = Messages.eco_history_header.render(Placeholder.PLAYER, targetName, Placeholder.PAGE, String.valueOf(page), Placeholder.PAGES, String.valueOf(pages));
+
+            for (var entry : entries) {
+                var amount = (entry.amount() < 0 ? "-" : "+") + economy.format(Money.toMajor(Math.abs(entry.amount())), false);
+                var type = entry.type().name().toLowerCase(Locale.ROOT).replace('_', ' ');
+
+                msg.insert(Message.raw("\n"));
+                msg.insert(Messages.eco_history_record.render(Map.of(Placeholder.TIME, TS.format(Instant.ofEpochMilli(entry.time())), Placeholder.TYPE, type, Placeholder.AMOUNT, amount, Placeholder.BALANCE, economy.format(Money.toMajor(entry.balance()), false), Placeholder.ACTOR, nameOf(entry.actor(), "CONSOLE"), Placeholder.COUNTERPARTY, nameOf(entry.counterparty(), "-"))));
+            }
+
+            sender.sendMessage(msg);
+        } catch (Exception e) {
+            sender.sendMessage(Messages.internal_error.render());
+            logger.at(Level.SEVERE).withCause(e).log(fromPlayer == null ? "/eco history failed: from=CONSOLE, targetName=" + targetName : "/eco history failed: fromUUID=" + fromPlayer.getUuid() + ", fromName=" + fromPlayer.getUsername() + ", targetName=" + targetName);
+            return Outcome.ERROR;
+        }
+
+        return Outcome.SUCCESS;
+    }
+
+    private String nameOf(UUID uuid, String fallback) throws Exception {
+        if (uuid == null) {
+            return fallback;
+        }
+
+        var row = accounts.getRow(uuid);
+        return row == null || row.name() == null ? uuid.toString() : row.name();
+    }
+}
@@ -0,0 +1,45 @@
+package me.clicker.economy.commands;
+
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.command.system.CommandContext;
+
+import javax.annotation.Nonnull;
+import java.util.Map;
+
+import me.clicker.economy.*;
+import me.clicker.economy.config.Messages;
+import me.clicker.economy.stats.Operation;
+import me.clicker.economy.stats.Stats;
+
+public final class EcoStatsCommand extends InstrumentedCommand {
+    public EcoStatsCommand() {
+        super("stats", "Show storage and command latency since startup", Operation.ECO_STATS);
+    }
+
+    @Override
+    protected Outcome run(@Nonnull CommandContext ctx) {
+        var sender = ctx.sender();
+
+        if (!sender.hasPermission("economy.eco")) {
+            sender.sendMessage(Messages.eco_no_permission.render());
+            return Outcome.DENIED;
+        }
+
+        var uptime = Stats.uptimeNanos();
+        var msg = Messages.eco_stats_header.render(Placeholder.UPTIME, Stats.formatDuration(uptime));
+
+        for (var operation : Operation.values()) {
+            var snapshot = Stats.snapshot(operation);
+
+            if (snapshot.count() == 0) {
+                continue;
+            }
+
+            msg.insert(Message.raw("\n"));
+            msg.insert(Messages.eco_stats_record.render(Map.of(Placeholder.OPERATION, operation.label(), Placeholder.COUNT, String.valueOf(snapshot.count()), Placeholder.RATE, Stats.formatRate(snapshot.count() / (uptime / 1e9)), Placeholder.P50, Stats.formatDuration(snapshot.percentile(50)), Placeholder.P99, Stats.formatDuration(snapshot.percentile(99)), Placeholder.MAX, Stats.formatDuration(snapshot.max()))));
+        }
+
+        sender.sendMessage(msg);
+        return Outcome.SUCCESS;
+    }
+}
@@ -0,0 +1,77 @@
+package me.clicker.economy.commands;
+
+import com.hypixel.hytale.server.core.command.system.AbstractCommand;
+import com.hypixel.hytale.server.core.command.system.CommandContext;
+import jdk.jfr.EventType;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.CompletableFuture;
+
+import me.clicker.economy.stats.Operation;
+import me.clicker.economy.stats.Stats;
+
+/**
+ * A command whose executions are timed in {@link Stats} under its {@link Operation}, and emitted as
+ * {@link CommandEvent}s while a Flight Recorder recording has them enabled.
+ */
+abstract class InstrumentedCommand extends AbstractCommand {
+    private static final EventType COMMAND_EVENT = EventType.getEventType(CommandEvent.class);
+
+    private final Operation operation;
+
+    /**
+     * How an execution ended, as reported in {@link CommandEvent}s.
+     */
+    protected enum Outcome {
+        SUCCESS,
+        DENIED,
+        INVALID,
+        INSUFFICIENT_FUNDS,
+        ERROR
+    }
+
+    protected InstrumentedCommand(String name, String description, Operation operation) {
+        super(name, description);
+
+        this.operation = operation;
+    }
+
+    protected InstrumentedCommand(String description, Operation operation) {
+        super(description);
+
+        this.operation = operation;
+    }
+
+    @Override
+    protected final CompletableFuture<Void> execute(@Nonnull CommandContext ctx) {
+        // Only created while a recording enables it, so unrecorded executions allocate no event.
+        var event = COMMAND_EVENT.isEnabled() ? new CommandEvent() : null;
+        var start = System.nanoTime();
+        var outcome = Outcome.ERROR;
+
+        if (event != null) {
+            event.begin();
+        }
+
+        try {
+            outcome = run(ctx);
+        } finally {
+            Stats.record(operation, start);
+
+            if (event != null) {
+                event.end();
+
+                if (event.shouldCommit()) {
+                    event.command = operation.label();
+                    event.sender = ctx.isPlayer() ? ctx.sender().getDisplayName() : "CONSOLE";
+                    event.outcome = outcome.name();
+                    event.commit();
+                }
+            }
+        }
+
+        return CompletableFuture.completedFuture(null);
+    }
+
+    protected abstract Outcome run(@Nonnull CommandContext ctx);
+}
@@ -1,60 +1,119 @@
-package me.clicker.economy.config;
-
-import org.yaml.snakeyaml.Yaml;
-
-import java.io.FileInputStream;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.Map;
-
-public final class Config {
-    public static String currency_symbol;
-    public static int currency_fraction_digits;
-    public static double balance_starting;
-    public static boolean pay_allow_offline;
-    public static int baltop_page_size;
-
-    public static void load(Path dataDir) {
-        try {
-            Files.createDirectories(dataDir);
-        } catch (Exception ignored) {}
-
-        var file = dataDir.resolve("config.yml").toFile();
-
-        if (!file.exists()) {
-            try (InputStream in = Config.class.getClassLoader().getResourceAsStream("config.yml")) {
-
-                if (in == null) {
-                    throw new RuntimeException("config.yml not found in resources");
-                }
-
-                Files.copy(in, file.toPath());
-            } catch (Exception e) {
-                throw new RuntimeException("Failed to extract config.yml", e);
-            }
-        }
-
-        try (Reader r = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
-            Map<String, Object> root = new Yaml().load(r);
-
-            var currency = (Map<String, Object>) root.get("currency");
-            currency_symbol = (String) currency.get("symbol");
-            currency_fraction_digits = ((Number) currency.get("fraction_digits")).intValue();
-
-            var balance = (Map<String, Object>) root.get("balance");
-            balance_starting = ((Number) balance.get("starting")).doubleValue();
-
-            var pay = (Map<String, Object>) root.get("pay");
-            pay_allow_offline = (Boolean) pay.get("allow_offline");
-
-            var baltop = (Map<String, Object>) root.get("baltop");
-            baltop_page_size = ((Number) baltop.get("page_size")).intValue();
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to load config.yml", e);
-        }
-    }
+package me.clicker.economy.config;
+
+import me.clicker.economy.jobs.JobDefinition;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public final class Config {
+    public static String currency_symbol;
+    public static int currency_fraction_digits;
+    public static double balance_starting;
+    public static boolean pay_allow_offline;
+    public static int baltop_page_size;
+    public static String cache_flush_mode;
+    public static long cache_flush_interval_ms;
+    public static int cache_flush_ops;
+    public static long cache_reconcile_interval_minutes;
+    public static long cache_group_commit_window_ms;
+    public static int cache_group_commit_max_batch;
+    public static long cache_join_batch_window_ms;
+    public static String storage_type;
+    public static int storage_read_connections;
+    public static long storage_log_compact_mb;
+    public static boolean ledger_enabled;
+    public static int ledger_segment_size_mb;
+    public static int ledger_history_page_size;
+    public static long stats_log_interval_minutes;
+    public static int bulk_chunk_size;
+    public static int jobs_chunk_size;
+    public static long jobs_chunk_pause_ms;
+    public static long jobs_throttle_p99_ms;
+    public static long jobs_check_interval_minutes;
+    public static List<JobDefinition> jobs;
+
+    public static void load(Path dataDir) {
+        try {
+            Files.createDirectories(dataDir);
+        } catch (Exception ignored) {}
+
+        var file = dataDir.resolve("config.yml").toFile();
+
+        if (!file.exists()) {
+            try (InputStream in = Config.class.getClassLoader().getResourceAsStream("config.yml")) {
+
+                if (in == null) {
+                    throw new RuntimeException("config.yml not found in resources");
+                }
+
+                Files.copy(in, file.toPath());
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to extract config.yml", e);
+            }
+        }
+
+        try (Reader r = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            Map<String, Object> root = new Yaml().load(r);
+
+            var currency = (Map<String, Object>) root.get("currency");
+            currency_symbol = (String) currency.get("symbol");
+            currency_fraction_digits = ((Number) currency.get("fraction_digits")).intValue();
+
+            var balance = (Map<String, Object>) root.get("balance");
+            balance_starting = ((Number) balance.get("starting")).doubleValue();
+
+            var pay = (Map<String, Object>) root.get("pay");
+            pay_allow_offline = (Boolean) pay.get("allow_offline");
+
+            var baltop = (Map<String, Object>) root.get("baltop");
+            baltop_page_size = ((Number) baltop.get("page_size")).intValue();
+
+            var cache = (Map<String, Object>) root.getOrDefault("cache", Map.of());
+            cache_flush_mode = (String) cache.getOrDefault("flush_mode", "interval");
+            cache_flush_interval_ms = ((Number) cache.getOrDefault("flush_interval_ms", 1000)).longValue();
+            cache_flush_ops = ((Number) cache.getOrDefault("flush_ops", 100)).intValue();
+            cache_reconcile_interval_minutes = ((Number) cache.getOrDefault("reconcile_interval_minutes", 30)).longValue();
+            cache_group_commit_window_ms = ((Number) cache.getOrDefault("group_commit_window_ms", 2)).longValue();
+            cache_group_commit_max_batch = ((Number) cache.getOrDefault("group_commit_max_batch", 256)).intValue();
+            cache_join_batch_window_ms = ((Number) cache.getOrDefault("join_batch_window_ms", 50)).longValue();
+
+            var storage = (Map<String, Object>) root.getOrDefault("storage", Map.of());
+            storage_type = (String) storage.getOrDefault("type", "sqlite");
+            storage_read_connections = ((Number) storage.getOrDefault("read_connections", 4)).intValue();
+            storage_log_compact_mb = ((Number) storage.getOrDefault("log_compact_mb", 64)).longValue();
+
+            var ledger = (Map<String, Object>) root.getOrDefault("ledger", Map.of());
+            ledger_enabled = (Boolean) ledger.getOrDefault("enabled", true);
+            ledger_segment_size_mb = ((Number) ledger.getOrDefault("segment_size_mb", 16)).intValue();
+            ledger_history_page_size = ((Number) ledger.getOrDefault("history_page_size", 10)).intValue();
+
+            var stats = (Map<String, Object>) root.getOrDefault("stats", Map.of());
+            stats_log_interval_minutes = ((Number) stats.getOrDefault("log_interval_minutes", 15)).longValue();
+
+            var bulk = (Map<String, Object>) root.getOrDefault("bulk", Map.of());
+            bulk_chunk_size = ((Number) bulk.getOrDefault("chunk_size", 1000)).intValue();
+
+            var jobsSection = (Map<String, Object>) root.getOrDefault("jobs", Map.of());
+            jobs_chunk_size = ((Number) jobsSection.getOrDefault("chunk_size", 500)).intValue();
+            jobs_chunk_pause_ms = ((Number) jobsSection.getOrDefault("chunk_pause_ms", 50)).longValue();
+            jobs_throttle_p99_ms = ((Number) jobsSection.getOrDefault("throttle_p99_ms", 25)).longValue();
+            jobs_check_interval_minutes = ((Number) jobsSection.getOrDefault("check_interval_minutes", 5)).longValue();
+            jobs = new ArrayList<>();
+
+            for (var entry : ((Map<String, Object>) jobsSection.getOrDefault("list", Map.of())).entrySet()) {
+                jobs.add(JobDefinition.parse(entry.getKey(), (Map<String, Object>) entry.getValue()));
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to load config.yml", e);
+        }
+    }
 }
\ No newline at end of file
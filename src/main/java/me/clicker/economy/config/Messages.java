@@ -1,118 +1,143 @@
-package me.clicker.economy.config;
-
-import org.yaml.snakeyaml.Yaml;
-
-import java.io.FileInputStream;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.Map;
-
-public final class Messages {
-    public static String must_be_positive;
-    public static String player_not_found;
-    public static String amount_invalid;
-    public static String internal_error;
-
-    public static String pay_no_permission;
-    public static String pay_player_only;
-    public static String pay_self;
-    public static String pay_pay_offline;
-    public static String pay_not_enough;
-    public static String pay_sender;
-    public static String pay_target;
-
-    public static String eco_no_permission;
-
-    public static String eco_give_sender;
-    public static String eco_give_target;
-
-    public static String eco_take_not_enough;
-    public static String eco_take_sender;
-    public static String eco_take_target;
-
-    public static String eco_set_sender;
-    public static String eco_set_target;
-
-    public static String balance_console_requires_player;
-    public static String balance_no_permission;
-    public static String balance_others_no_permission;
-    public static String balance_self;
-    public static String balance_other;
-
-    public static String baltop_no_permission;
-    public static String baltop_header;
-    public static String baltop_record;
-
-    public static void load(Path dataDir) {
-        try {
-            Files.createDirectories(dataDir);
-        } catch (Exception ignored) {}
-
-        var file = dataDir.resolve("messages.yml").toFile();
-
-        if (!file.exists()) {
-            try (InputStream in = Messages.class.getClassLoader().getResourceAsStream("messages.yml")) {
-
-                if (in == null) {
-                    throw new RuntimeException("messages.yml not found in resources");
-                }
-
-                Files.copy(in, file.toPath());
-            } catch (Exception e) {
-                throw new RuntimeException("Failed to extract messages.yml", e);
-            }
-        }
-
-        try (Reader r = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
-            Map<String, Object> root = new Yaml().load(r);
-
-            must_be_positive = (String) root.get("must_be_positive");
-            player_not_found = (String) root.get("player_not_found");
-            amount_invalid = (String) root.get("amount_invalid");
-            internal_error = (String) root.get("internal_error");
-
-            var pay = (Map<String, Object>) root.get("pay");
-            pay_no_permission = (String) pay.get("no_permission");
-            pay_player_only = (String) pay.get("player_only");
-            pay_self = (String) pay.get("self");
-            pay_pay_offline = (String) pay.get("pay_offline");
-            pay_not_enough = (String) pay.get("not_enough");
-            pay_sender = (String) pay.get("sender");
-            pay_target = (String) pay.get("target");
-
-            var eco = (Map<String, Object>) root.get("eco");
-            eco_no_permission = (String) eco.get("no_permission");
-
-            var ecoGive = (Map<String, Object>) eco.get("give");
-            eco_give_sender = (String) ecoGive.get("sender");
-            eco_give_target = (String) ecoGive.get("target");
-
-            var ecoTake = (Map<String, Object>) eco.get("take");
-            eco_take_not_enough = (String) ecoTake.get("not_enough");
-            eco_take_sender = (String) ecoTake.get("sender");
-            eco_take_target = (String) ecoTake.get("target");
-
-            var ecoSet = (Map<String, Object>) eco.get("set");
-            eco_set_sender = (String) ecoSet.get("sender");
-            eco_set_target = (String) ecoSet.get("target");
-
-            var balance = (Map<String, Object>) root.get("balance");
-            balance_console_requires_player = (String) balance.get("console_requires_player");
-            balance_no_permission = (String) balance.get("no_permission");
-            balance_others_no_permission = (String) balance.get("others_no_permission");
-            balance_self = (String) balance.get("self");
-            balance_other = (String) balance.get("other");
-
-            var baltop = (Map<String, Object>) root.get("baltop");
-            baltop_no_permission = (String) baltop.get("no_permission");
-            baltop_header = (String) baltop.get("header");
-            baltop_record = (String) baltop.get("record");
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to load messages.yml", e);
-        }
-    }
+package me.clicker.economy.config;
+
+import me.clicker.economy.MessageTemplate;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+public final class Messages {
+    public static MessageTemplate must_be_positive;
+    public static MessageTemplate player_not_found;
+    public static MessageTemplate amount_invalid;
+    public static MessageTemplate internal_error;
+
+    public static MessageTemplate pay_no_permission;
+    public static MessageTemplate pay_player_only;
+    public static MessageTemplate pay_self;
+    public static MessageTemplate pay_pay_offline;
+    public static MessageTemplate pay_not_enough;
+    public static MessageTemplate pay_sender;
+    public static MessageTemplate pay_target;
+
+    public static MessageTemplate eco_no_permission;
+
+    public static MessageTemplate eco_give_sender;
+    public static MessageTemplate eco_give_target;
+    public static MessageTemplate eco_give_bulk;
+
+    public static MessageTemplate eco_take_not_enough;
+    public static MessageTemplate eco_take_sender;
+    public static MessageTemplate eco_take_target;
+    public static MessageTemplate eco_take_bulk;
+
+    public static MessageTemplate eco_set_sender;
+    public static MessageTemplate eco_set_target;
+    public static MessageTemplate eco_set_bulk;
+
+    public static MessageTemplate eco_history_header;
+    public static MessageTemplate eco_history_record;
+    public static MessageTemplate eco_history_empty;
+
+    public static MessageTemplate eco_stats_header;
+    public static MessageTemplate eco_stats_record;
+
+    public static MessageTemplate balance_console_requires_player;
+    public static MessageTemplate balance_no_permission;
+    public static MessageTemplate balance_others_no_permission;
+    public static MessageTemplate balance_self;
+    public static MessageTemplate balance_other;
+
+    public static MessageTemplate baltop_no_permission;
+    public static MessageTemplate baltop_header;
+    public static MessageTemplate baltop_record;
+    public static MessageTemplate baltop_rank;
+
+    public static void load(Path dataDir) {
+        try {
+            Files.createDirectories(dataDir);
+        } catch (Exception ignored) {}
+
+        var file = dataDir.resolve("messages.yml").toFile();
+
+        if (!file.exists()) {
+            try (InputStream in = Messages.class.getClassLoader().getResourceAsStream("messages.yml")) {
+
+                if (in == null) {
+                    throw new RuntimeException("messages.yml not found in resources");
+                }
+
+                Files.copy(in, file.toPath());
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to extract messages.yml", e);
+            }
+        }
+
+        try (Reader r = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            Map<String, Object> root = new Yaml().load(r);
+
+            must_be_positive = MessageTemplate.compile((String) root.get("must_be_positive"));
+            player_not_found = MessageTemplate.compile((String) root.get("player_not_found"));
+            amount_invalid = MessageTemplate.compile((String) root.get("amount_invalid"));
+            internal_error = MessageTemplate.compile((String) root.get("internal_error"));
+
+            var pay = (Map<String, Object>) root.get("pay");
+            pay_no_permission = MessageTemplate.compile((String) pay.get("no_permission"));
+            pay_player_only = MessageTemplate.compile((String) pay.get("player_only"));
+            pay_self = MessageTemplate.compile((String) pay.get("self"));
+            pay_pay_offline = MessageTemplate.compile((String) pay.get("pay_offline"));
+            pay_not_enough = MessageTemplate.compile((String) pay.get("not_enough"));
+            pay_sender = MessageTemplate.compile((String) pay.get("sender"));
+            pay_target = MessageTemplate.compile((String) pay.get("target"));
+
+            var eco = (Map<String, Object>) root.get("eco");
+            eco_no_permission = MessageTemplate.compile((String) eco.get("no_permission"));
+
+            var ecoGive = (Map<String, Object>) eco.get("give");
+            eco_give_sender = MessageTemplate.compile((String) ecoGive.get("sender"));
+            eco_give_target = MessageTemplate.compile((String) ecoGive.get("target"));
+            eco_give_bulk = MessageTemplate.compile((String) ecoGive.getOrDefault("bulk", "&c{amount} &ahas been added to &e{count} &aaccounts in &f{time}&a."));
+
+            var ecoTake = (Map<String, Object>) eco.get("take");
+            eco_take_not_enough = MessageTemplate.compile((String) ecoTake.get("not_enough"));
+            eco_take_sender = MessageTemplate.compile((String) ecoTake.get("sender"));
+            eco_take_target = MessageTemplate.compile((String) ecoTake.get("target"));
+            eco_take_bulk = MessageTemplate.compile((String) ecoTake.getOrDefault("bulk", "&c{amount} &ataken from &e{count} &aaccounts in &f{time}&a. &e{skipped} &adidn't have enough funds."));
+
+            var ecoSet = (Map<String, Object>) eco.get("set");
+            eco_set_sender = MessageTemplate.compile((String) ecoSet.get("sender"));
+            eco_set_target = MessageTemplate.compile((String) ecoSet.get("target"));
+            eco_set_bulk = MessageTemplate.compile((String) ecoSet.getOrDefault("bulk", "&aYou set the balance of &e{count} &aaccounts to &c{amount} &ain &f{time}&a."));
+
+            var ecoHistory = (Map<String, Object>) eco.getOrDefault("history", Map.of());
+            eco_history_header = MessageTemplate.compile((String) ecoHistory.getOrDefault("header", "&6History of &e{player} &e-- &6Page &c{page}&6/&c{pages}"));
+            eco_history_record = MessageTemplate.compile((String) ecoHistory.getOrDefault("record", "&7{time} &f{type} &c{amount} &7(balance &c{balance}&7) by &e{actor}&7, with &e{counterparty}"));
+            eco_history_empty = MessageTemplate.compile((String) ecoHistory.getOrDefault("empty", "&e{player} &6has no recorded transactions."));
+
+            var ecoStats = (Map<String, Object>) eco.getOrDefault("stats", Map.of());
+            eco_stats_header = MessageTemplate.compile((String) ecoStats.getOrDefault("header", "&6Economy stats &7(uptime {uptime})"));
+            eco_stats_record = MessageTemplate.compile((String) ecoStats.getOrDefault("record", "&e{operation}&7: &f{count} &7ops, &f{rate}&7/s, p50 &f{p50}&7, p99 &f{p99}&7, max &c{max}"));
+
+            var balance = (Map<String, Object>) root.get("balance");
+            balance_console_requires_player = MessageTemplate.compile((String) balance.get("console_requires_player"));
+            balance_no_permission = MessageTemplate.compile((String) balance.get("no_permission"));
+            balance_others_no_permission = MessageTemplate.compile((String) balance.get("others_no_permission"));
+            balance_self = MessageTemplate.compile((String) balance.get("self"));
+            balance_other = MessageTemplate.compile((String) balance.get("other"));
+
+            var baltop = (Map<String, Object>) root.get("baltop");
+            baltop_no_permission = MessageTemplate.compile((String) baltop.get("no_permission"));
+            baltop_header = MessageTemplate.compile((String) baltop.get("header"));
+            baltop_record = MessageTemplate.compile((String) baltop.get("record"));
+            baltop_rank = MessageTemplate.compile((String) baltop.getOrDefault("rank", "&6Your rank: &c#{rank}&6, {balance}"));
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to load messages.yml", e);
+        }
+    }
 }
\ No newline at end of file
@@ -1,7 +1,7 @@
-package me.clicker.economy.exceptions;
-
-public class NoRowsAffectedException extends Exception {
-    public NoRowsAffectedException() {
-        super();
-    }
+package me.clicker.economy.exceptions;
+
+public class NoRowsAffectedException extends Exception {
+    public NoRowsAffectedException() {
+        super();
+    }
 }
\ No newline at end of file
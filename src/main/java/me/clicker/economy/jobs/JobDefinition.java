@@ -0,0 +1,104 @@
+package me.clicker.economy.jobs;
+
+import me.clicker.economy.Money;
+import me.clicker.economy.storage.Ledger;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A recurring balance change, read from the {@code jobs.list} section of config.yml.
+ *
+ * <p>Percentages are kept in basis points, and balances in minor units, so every run computes exactly the
+ * same amounts.</p>
+ */
+public record JobDefinition(String name, Type type, boolean enabled, long basisPoints, long minBalance, long maxBalance, long inactiveMillis, long intervalMillis) {
+    private static final long HOUR_MILLIS = 60L * 60 * 1000;
+    private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+
+    public enum Type {
+        /** Takes a percentage of the balance above {@code min_balance}. */
+        TAX(Ledger.Type.TAX),
+        /** Adds a percentage of the balance, counting at most {@code max_balance} of it. */
+        INTEREST(Ledger.Type.INTEREST),
+        /** Like TAX, for accounts whose balance has not changed in {@code inactive_days}. */
+        DECAY(Ledger.Type.DECAY);
+
+        private final Ledger.Type ledgerType;
+
+        Type(Ledger.Type ledgerType) {
+            this.ledgerType = ledgerType;
+        }
+
+        public Ledger.Type ledgerType() {
+            return ledgerType;
+        }
+    }
+
+    /**
+     * Reads a job from its config section.
+     *
+     * @throws IllegalArgumentException if a value is missing or out of range
+     */
+    public static JobDefinition parse(String name, Map<String, Object> section) {
+        if (!name.matches("[A-Za-z0-9_-]+")) {
+            throw new IllegalArgumentException("Invalid job name: " + name);
+        }
+
+        var type = Type.valueOf(((String) section.getOrDefault("type", name)).toUpperCase(Locale.ROOT));
+        var enabled = (Boolean) section.getOrDefault("enabled", false);
+        var percent = new BigDecimal(String.valueOf(section.getOrDefault("percent", 0)));
+        var minBalance = Money.toMinor(((Number) section.getOrDefault("min_balance", 0)).doubleValue());
+        var maxBalance = Money.toMinor(((Number) section.getOrDefault("max_balance", 0)).doubleValue());
+        var inactiveDays = ((Number) section.getOrDefault("inactive_days", 0)).doubleValue();
+        var intervalHours = ((Number) section.getOrDefault("interval_hours", 24)).doubleValue();
+
+        if (percent.signum() <= 0 || percent.compareTo(BigDecimal.valueOf(100)) > 0 || percent.scale() > 2) {
+            throw new IllegalArgumentException("Job " + name + ": percent must be above 0 and at most 100, with at most two decimals");
+        }
+
+        if (minBalance < 0 || maxBalance < 0) {
+            throw new IllegalArgumentException("Job " + name + ": min_balance and max_balance must not be negative");
+        }
+
+        if (intervalHours <= 0) {
+            throw new IllegalArgumentException("Job " + name + ": interval_hours must be above 0");
+        }
+
+        if (type == Type.DECAY && inactiveDays <= 0) {
+            throw new IllegalArgumentException("Job " + name + ": inactive_days must be above 0");
+        }
+
+        return new JobDefinition(name, type, enabled, percent.movePointRight(2).longValueExact(), minBalance, maxBalance, (long) (inactiveDays * DAY_MILLIS), (long) (intervalHours * HOUR_MILLIS));
+    }
+
+    /**
+     * Gets the balance after one run of this job, which is {@code balance} itself when the job leaves it alone.
+     */
+    public long apply(long balance) {
+        if (type == Type.INTEREST) {
+            var counted = maxBalance > 0 ? Math.min(balance, maxBalance) : balance;
+
+            if (counted <= 0) {
+                return balance;
+            }
+
+            var interest = percentOf(counted);
+            return balance > Long.MAX_VALUE - interest ? Long.MAX_VALUE : balance + interest;
+        }
+
+        if (balance <= minBalance) {
+            return balance;
+        }
+
+        return balance - percentOf(balance - minBalance);
+    }
+
+    /**
+     * Gets this job's percentage of a non-negative amount, rounded down, without overflowing.
+     */
+    private long percentOf(long amount) {
+        return amount / 10_000 * basisPoints + amount % 10_000 * basisPoints / 10_000;
+    }
+}
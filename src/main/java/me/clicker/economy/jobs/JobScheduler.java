@@ -0,0 +1,245 @@
+package me.clicker.economy.jobs;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import me.clicker.economy.EconomyPlugin;
+import me.clicker.economy.config.Config;
+import me.clicker.economy.stats.Operation;
+import me.clicker.economy.stats.Stats;
+import me.clicker.economy.storage.AccountCache;
+import me.clicker.economy.storage.SQLiteStorage;
+import me.clicker.economy.storage.Storage;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Runs the recurring jobs from config.yml, such as a wealth tax or interest, over every account.
+ *
+ * <p>A run walks the accounts in chunks of {@code jobs.chunk_size}, each applied through
+ * {@link AccountCache#rewrite}. Every chunk stores its balances and the run's checkpoint in one transaction,
+ * so a run stopped by a restart or a crash resumes from the next chunk and never applies a job twice to the
+ * same account. Between chunks it pauses for {@code jobs.chunk_pause_ms}, doubling the pause while the p99
+ * latency of {@code /pay} is above {@code jobs.throttle_p99_ms}.</p>
+ *
+ * <p>Progress is kept in the {@code meta} table under {@code job.<name>.*}: {@code last_run} is when the last
+ * finished run started, while a run is in progress {@code started} is when it started and {@code cursor} the
+ * last account it reached, or {@code end} once every chunk is done.</p>
+ */
+public final class JobScheduler {
+    private static final long MAX_PAUSE_MS = 10_000;
+    private static final String END = "end";
+
+    private final HytaleLogger logger;
+    private final SQLiteStorage storage;
+    private final AccountCache accounts;
+    private final List<JobDefinition> jobs;
+    private final int chunkSize;
+    private final long chunkPauseMs;
+    private final long throttleNanos;
+    private final long checkIntervalMinutes;
+
+    private ScheduledExecutorService executor;
+    private volatile boolean running;
+
+    public JobScheduler(SQLiteStorage storage, AccountCache accounts) {
+        this(storage, accounts, Config.jobs, EconomyPlugin.getInstance().getLogger());
+    }
+
+    public JobScheduler(SQLiteStorage storage, AccountCache accounts, List<JobDefinition> jobs, HytaleLogger logger) {
+        this.logger = logger;
+        this.storage = storage;
+        this.accounts = accounts;
+        this.jobs = List.copyOf(jobs);
+        this.chunkSize = Math.max(1, Config.jobs_chunk_size);
+        this.chunkPauseMs = Math.max(0, Config.jobs_chunk_pause_ms);
+        this.throttleNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, Config.jobs_throttle_p99_ms));
+        this.checkIntervalMinutes = Math.max(1, Config.jobs_check_interval_minutes);
+    }
+
+    /**
+     * Starts checking for due jobs every {@code jobs.check_interval_minutes}. Does nothing if no job is
+     * enabled.
+     */
+    public synchronized void start() {
+        if (executor != null || jobs.stream().noneMatch(JobDefinition::enabled)) {
+            return;
+        }
+
+        running = true;
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "Economy-Jobs");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::runDue, checkIntervalMinutes, checkIntervalMinutes, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Stops after the chunk in progress, if any. A stopped run resumes from its checkpoint on the next start.
+     */
+    public void shutdown() {
+        ScheduledExecutorService executor;
+
+        synchronized (this) {
+            executor = this.executor;
+            this.executor = null;
+            running = false;
+            notifyAll();
+        }
+
+        if (executor != null) {
+            // Not interrupted: a chunk committed to storage must also reach the cache.
+            executor.shutdown();
+
+            try {
+                executor.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void runDue() {
+        for (var job : jobs) {
+            if (!running) {
+                return;
+            }
+
+            if (!job.enabled()) {
+                continue;
+            }
+
+            try {
+                runIfDue(job);
+            } catch (Exception e) {
+                logger.at(Level.SEVERE).withCause(e).log("Economy job " + job.name() + " failed, it will resume from its last checkpoint");
+            }
+        }
+    }
+
+    private void runIfDue(JobDefinition job) throws SQLException {
+        var startedKey = key(job, "started");
+        var cursorKey = key(job, "cursor");
+        var started = storage.getMeta(startedKey);
+        UUID after = null;
+        var done = false;
+        long start;
+
+        if (started != null) {
+            var cursor = storage.getMeta(cursorKey);
+            start = Long.parseLong(started);
+            done = END.equals(cursor);
+            after = cursor == null || done ? null : UUID.fromString(cursor);
+            logger.at(Level.INFO).log("Resuming economy job " + job.name() + (after == null ? "" : " after " + after));
+        } else {
+            var lastRun = storage.getMeta(key(job, "last_run"));
+            start = System.currentTimeMillis();
+
+            if (lastRun != null && start - Long.parseLong(lastRun) < job.intervalMillis()) {
+                return;
+            }
+
+            storage.setMeta(Map.of(startedKey, String.valueOf(start)));
+        }
+
+        var began = System.nanoTime();
+        var idleBefore = start - job.inactiveMillis();
+        var changed = 0L;
+        var chunks = 0;
+        var throttled = 0;
+        var pause = chunkPauseMs;
+        var latency = Stats.snapshot(Operation.PAY);
+
+        while (!done) {
+            if (chunks > 0) {
+                var now = Stats.snapshot(Operation.PAY);
+
+                if (now.minus(latency).percentile(99) > throttleNanos) {
+                    pause = Math.min(MAX_PAUSE_MS, Math.max(1, pause * 2));
+                    throttled++;
+                } else {
+                    pause = chunkPauseMs;
+                }
+
+                latency = now;
+
+                if (!pause(pause)) {
+                    logger.at(Level.INFO).log("Economy job " + job.name() + " stopped after changing " + changed + " accounts, it will resume on the next start");
+                    return;
+                }
+            }
+
+            var result = accounts.rewrite(after, chunkSize, job.type().ledgerType(), (rows, dirty, last) -> {
+                Set<UUID> idle = null;
+
+                if (job.type() == JobDefinition.Type.DECAY && !rows.isEmpty()) {
+                    idle = storage.getIdle(rows.get(0).uuid(), rows.get(rows.size() - 1).uuid(), idleBefore);
+                }
+
+                var balances = new HashMap<UUID, Long>();
+                var updated = new ArrayList<Storage.Row>();
+
+                for (var row : rows) {
+                    // Dirty accounts changed since their last flush, so they are not idle whatever storage says.
+                    if (idle != null && (dirty.contains(row.uuid()) || !idle.contains(row.uuid()))) {
+                        continue;
+                    }
+
+                    var balance = job.apply(row.balance());
+
+                    if (balance != row.balance()) {
+                        balances.put(row.uuid(), balance);
+                        updated.add(new Storage.Row(row.uuid(), row.name(), balance));
+                    }
+                }
+
+                storage.updateBalances(updated, Map.of(cursorKey, last == null ? END : last.toString()));
+                return balances;
+            });
+
+            changed += result.changed();
+            chunks++;
+            after = result.last();
+            done = after == null;
+        }
+
+        var meta = new HashMap<String, String>();
+        meta.put(key(job, "last_run"), String.valueOf(start));
+        meta.put(startedKey, null);
+        meta.put(cursorKey, null);
+        storage.setMeta(meta);
+
+        logger.at(Level.INFO).log("Economy job " + job.name() + " changed " + changed + " accounts in " + chunks + " chunks over " + Stats.formatDuration(System.nanoTime() - began) + (throttled > 0 ? ", slowed down " + throttled + " times by /pay latency" : ""));
+    }
+
+    /**
+     * Waits between chunks. Returns false if the scheduler was shut down meanwhile.
+     */
+    private synchronized boolean pause(long ms) {
+        var deadline = System.currentTimeMillis() + ms;
+
+        try {
+            for (var left = ms; running && left > 0; left = deadline - System.currentTimeMillis()) {
+                wait(left);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        return running;
+    }
+
+    private static String key(JobDefinition job, String name) {
+        return "job." + job.name() + "." + name;
+    }
+}
@@ -0,0 +1,107 @@
+package me.clicker.economy.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latencies in nanoseconds, with HDR-style log-linear buckets.
+ *
+ * <p>Every power of two is split into 16 buckets, so a reported value is never more than 1/16 above the
+ * latency it stands for. Recording is one atomic increment and never allocates.</p>
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (63 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public void record(long nanos) {
+        counts.getAndIncrement(bucket(Math.max(0, nanos)));
+    }
+
+    public Snapshot snapshot() {
+        var copy = new long[BUCKETS];
+        var total = 0L;
+
+        for (var i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+
+        return new Snapshot(copy, total);
+    }
+
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        var exponent = 63 - Long.numberOfLeadingZeros(value);
+        var sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Gets the highest value that falls in a bucket.
+     */
+    private static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        var shift = bucket / SUB_BUCKETS - 1;
+        var lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * The counts of a histogram at one point in time.
+     */
+    public record Snapshot(long[] counts, long count) {
+        /**
+         * Gets the counts recorded since an earlier snapshot of the same histogram.
+         */
+        public Snapshot minus(Snapshot earlier) {
+            var diff = new long[counts.length];
+
+            for (var i = 0; i < counts.length; i++) {
+                diff[i] = counts[i] - earlier.counts[i];
+            }
+
+            return new Snapshot(diff, count - earlier.count);
+        }
+
+        /**
+         * Gets the latency at or below which {@code percentile} percent of the recorded latencies fall, or 0
+         * when nothing was recorded.
+         */
+        public long percentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+
+            var rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+            var seen = 0L;
+
+            for (var i = 0; i < counts.length; i++) {
+                seen += counts[i];
+
+                if (seen >= rank) {
+                    return highestValue(i);
+                }
+            }
+
+            return max();
+        }
+
+        public long max() {
+            for (var i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] > 0) {
+                    return highestValue(i);
+                }
+            }
+
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package me.clicker.economy.stats;
+
+/**
+ * An operation whose latency is recorded in {@link Stats}.
+ */
+public enum Operation {
+    GET_ROW_BY_UUID("getRow(uuid)"),
+    GET_ROW_BY_NAME("getRow(name)"),
+    EXISTS("exists"),
+    SAVE_ALL("saveAll"),
+    GET_TOP("getTop"),
+    TOTAL_BALANCE("totalBalance"),
+    COUNT_ROWS("countRows"),
+    FOR_EACH_ROW("forEachRow"),
+    GET_ROWS_AFTER("getRowsAfter"),
+    ADJUST_AFTER("adjustAfter"),
+    GET_IDLE("getIdle"),
+    UPDATE_BALANCES("updateBalances"),
+    GET_META("getMeta"),
+    SET_META("setMeta"),
+
+    PAY("/pay"),
+    BALANCE("/balance"),
+    BALTOP("/baltop"),
+    ECO_GIVE("/eco give"),
+    ECO_TAKE("/eco take"),
+    ECO_SET("/eco set"),
+    ECO_HISTORY("/eco history"),
+    ECO_STATS("/eco stats");
+
+    private final String label;
+
+    Operation(String label) {
+        this.label = label;
+    }
+
+    public String label() {
+        return label;
+    }
+}
@@ -0,0 +1,148 @@
+package me.clicker.economy.stats;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Latency of every storage operation and command since the server started.
+ *
+ * <p>Recording stays on permanently: it costs two {@link System#nanoTime} calls and one atomic increment.
+ * Shown by {@code /eco stats}, and summarized in the log every {@code stats.log_interval_minutes}.</p>
+ */
+public final class Stats {
+    private static final Operation[] OPERATIONS = Operation.values();
+    private static final LatencyHistogram[] HISTOGRAMS = new LatencyHistogram[OPERATIONS.length];
+    private static final long STARTED = System.nanoTime();
+
+    private static ScheduledExecutorService reporter;
+    private static LatencyHistogram.Snapshot[] reported;
+    private static long reportedAt;
+
+    static {
+        for (var i = 0; i < HISTOGRAMS.length; i++) {
+            HISTOGRAMS[i] = new LatencyHistogram();
+        }
+    }
+
+    private Stats() {}
+
+    /**
+     * Records an operation that started at {@code startNanos}, as returned by {@link System#nanoTime}.
+     */
+    public static void record(Operation operation, long startNanos) {
+        HISTOGRAMS[operation.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    public static LatencyHistogram.Snapshot snapshot(Operation operation) {
+        return HISTOGRAMS[operation.ordinal()].snapshot();
+    }
+
+    public static long uptimeNanos() {
+        return System.nanoTime() - STARTED;
+    }
+
+    /**
+     * Starts logging a summary of the operations done in each interval. Does nothing if the interval is 0.
+     */
+    public static synchronized void start(HytaleLogger logger, long intervalMinutes) {
+        if (intervalMinutes <= 0 || reporter != null) {
+            return;
+        }
+
+        reported = snapshots();
+        reportedAt = System.nanoTime();
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "Economy-Stats");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> {
+            try {
+                report(logger);
+            } catch (Exception e) {
+                logger.at(Level.WARNING).withCause(e).log("Failed to log economy stats");
+            }
+        }, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+    }
+
+    public static synchronized void shutdown() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+
+    private static synchronized void report(HytaleLogger logger) {
+        var now = System.nanoTime();
+        var current = snapshots();
+        var seconds = Math.max(1e-9, (now - reportedAt) / 1e9);
+        var line = new StringBuilder();
+
+        for (var i = 0; i < OPERATIONS.length; i++) {
+            var interval = current[i].minus(reported[i]);
+
+            if (interval.count() == 0) {
+                continue;
+            }
+
+            line.append(line.isEmpty() ? "" : " | ")
+                .append(OPERATIONS[i].label()).append(' ')
+                .append(interval.count()).append(" ops ").append(formatRate(interval.count() / seconds)).append("/s")
+                .append(" p50 ").append(formatDuration(interval.percentile(50)))
+                .append(" p99 ").append(formatDuration(interval.percentile(99)))
+                .append(" max ").append(formatDuration(interval.max()));
+        }
+
+        if (!line.isEmpty()) {
+            logger.at(Level.INFO).log("Economy stats, last " + formatDuration(now - reportedAt) + ": " + line);
+        }
+
+        reported = current;
+        reportedAt = now;
+    }
+
+    private static LatencyHistogram.Snapshot[] snapshots() {
+        var snapshots = new LatencyHistogram.Snapshot[OPERATIONS.length];
+
+        for (var i = 0; i < OPERATIONS.length; i++) {
+            snapshots[i] = HISTOGRAMS[i].snapshot();
+        }
+
+        return snapshots;
+    }
+
+    /**
+     * Formats a duration with a unit suited to its size, such as {@code 850us}, {@code 12.5ms} or
+     * {@code 3m 20s}.
+     */
+    public static String formatDuration(long nanos) {
+        if (nanos < 1_000_000) {
+            return (nanos + 500) / 1_000 + "us";
+        }
+
+        if (nanos < 1_000_000_000) {
+            return String.format(Locale.US, "%.1fms", nanos / 1e6);
+        }
+
+        if (nanos < 60_000_000_000L) {
+            return String.format(Locale.US, "%.2fs", nanos / 1e9);
+        }
+
+        var seconds = nanos / 1_000_000_000;
+
+        if (seconds < 3600) {
+            return seconds / 60 + "m " + seconds % 60 + "s";
+        }
+
+        return seconds / 3600 + "h " + seconds / 60 % 60 + "m";
+    }
+
+    public static String formatRate(double perSecond) {
+        return perSecond >= 100 ? String.valueOf(Math.round(perSecond)) : String.format(Locale.US, "%.1f", perSecond);
+    }
+}
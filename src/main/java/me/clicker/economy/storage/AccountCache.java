@@ -0,0 +1,1328 @@
+package me.clicker.economy.storage;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import me.clicker.economy.EconomyPlugin;
+import me.clicker.economy.config.Config;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+
+/**
+ * Authoritative in-memory view of player balances.
+ *
+ * <p>Reads are served from memory and mutations are applied in memory, then written back to
+ * {@link Storage} in batched transactions according to the configured {@link FlushMode}.
+ * Accounts are loaded lazily on their first mutation. Lookups of accounts that are not resident read
+ * storage without loading them, which holds their latest state since accounts are only evicted once
+ * flushed, so looking up offline players does not grow the cache.</p>
+ *
+ * <p>Players are registered with {@link #join} without blocking the connecting thread. Joins arriving
+ * within {@code cache.join_batch_window_ms} of each other are loaded together on the flusher thread and
+ * saved in one transaction, so each player's account is resident before their first command. After
+ * {@link #quit}, the account is evicted once it has been flushed.</p>
+ *
+ * <p>Names are resolved through an in-memory, case-insensitive name to UUID map that is filled as
+ * accounts are loaded, created or renamed (including on every join), falling back to the indexed
+ * {@code name_lower} column only for names not seen yet.</p>
+ *
+ * <p>Every account, loaded or not, is also ranked in a {@link Leaderboard} built at startup, which serves
+ * {@code /baltop} and rank queries without SQL. Mutations only note which accounts moved, and the
+ * leaderboard catches up before each read and each flush. The money supply and account count are
+ * maintained from mutation deltas, and periodically reconciled against the database.</p>
+ *
+ * <p>Each account is guarded by one of {@value #STRIPES} lock stripes chosen by its UUID, so mutations of
+ * unrelated accounts run in parallel. Operations on several accounts take their stripes in index order,
+ * which rules out deadlock. Flushes and evictions briefly take every stripe, so each flushed snapshot
+ * holds whole transfers and batches only.</p>
+ *
+ * <p>In {@link FlushMode#SYNC} mode a mutation returns only once it is durable. Mutations arriving within
+ * the group commit window share one flush, so a burst of payments costs one transaction instead of one each.</p>
+ *
+ * <p>Every mutation is recorded in the {@link Ledger} together with its {@code actor}, the UUID of the
+ * player who caused it, or null for the console and the API.</p>
+ */
+public class AccountCache {
+    private static final int STRIPES = 64;
+
+    private final HytaleLogger logger;
+    private final Storage storage;
+    private final Ledger ledger;
+    private final FlushMode flushMode;
+    private final long flushIntervalMs;
+    private final int flushOps;
+    private final long reconcileIntervalMs;
+    private final long groupCommitWindowMs;
+    private final int groupCommitMaxBatch;
+    private final long joinBatchWindowMs;
+
+    private final Map<UUID, Account> accounts = new ConcurrentHashMap<>();
+    private final Map<String, UUID> uuidsByName = new ConcurrentHashMap<>();
+    private final Leaderboard leaderboard = new Leaderboard();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ReentrantLock groupLock = new ReentrantLock();
+    private final Set<UUID> dirty = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, Account> unranked = new ConcurrentHashMap<>();
+    private final Map<UUID, Join> joins = new ConcurrentHashMap<>();
+    private final Set<UUID> leaving = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean joinsQueued = new AtomicBoolean();
+    private final AtomicBoolean evictionQueued = new AtomicBoolean();
+    private final AtomicInteger pendingOps = new AtomicInteger();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    private CompletableFuture<Void> group;
+    private int groupSize;
+    private final LongAdder moneySupply = new LongAdder();
+    private final LongAdder accountCount = new LongAdder();
+    /**
+     * Counts evictions and bulk changes, the two ways a stored balance can change under a load in flight.
+     */
+    private volatile long evictions;
+
+    private volatile ScheduledExecutorService flusher;
+
+    /**
+     * Outcome of {@link #applyBatch}: every account's new balance, or the first account that failed.
+     */
+    public record BatchResult(boolean success, Map<UUID, Long> balances, UUID failed, Storage.TakeResult.Reason reason) {}
+
+    /**
+     * Outcome of a bulk change: the accounts it changed, and those it skipped because they could not afford
+     * a take or a give would overflow.
+     */
+    public record BulkResult(int changed, int skipped) {}
+
+    /**
+     * Outcome of one {@link #rewrite} chunk: its last key, or null once the table is done, and the accounts
+     * it changed.
+     */
+    public record RewriteResult(UUID last, int changed) {}
+
+    /**
+     * Computes and stores new balances for one chunk of accounts, for {@link #rewrite}.
+     */
+    @FunctionalInterface
+    public interface Rewrite {
+        /**
+         * Gets the new balance of each account to change. {@code rows} holds the chunk's accounts with their
+         * current balances, {@code dirty} those of them with unflushed changes, and {@code last} the chunk's
+         * last key. The rewrite must also store the new balances; stored rows are current except for dirty
+         * accounts.
+         */
+        Map<UUID, Long> run(List<Storage.Row> rows, Set<UUID> dirty, UUID last) throws SQLException;
+    }
+
+    private record Join(String name, long startingBalance) {}
+
+    public enum FlushMode {
+        INTERVAL,
+        OPS,
+        SYNC
+    }
+
+    private static final class Account {
+        private final UUID uuid;
+        private volatile String name;
+        private volatile long balance;
+
+        private Account(UUID uuid, String name, long balance) {
+            this.uuid = uuid;
+            this.name = name;
+            this.balance = balance;
+        }
+
+        private Storage.Row toRow() {
+            return new Storage.Row(uuid, name, balance);
+        }
+    }
+
+    public AccountCache(Storage storage, Ledger ledger) {
+        this(storage, ledger, EconomyPlugin.getInstance().getLogger());
+    }
+
+    public AccountCache(Storage storage, Ledger ledger, HytaleLogger logger) {
+        this.logger = logger;
+        this.storage = storage;
+        this.ledger = ledger;
+        this.flushMode = FlushMode.valueOf(Config.cache_flush_mode.toUpperCase(Locale.ROOT));
+        this.flushIntervalMs = Math.max(1, Config.cache_flush_interval_ms);
+        this.flushOps = Math.max(1, Config.cache_flush_ops);
+        this.reconcileIntervalMs = TimeUnit.MINUTES.toMillis(Math.max(1, Config.cache_reconcile_interval_minutes));
+        this.groupCommitWindowMs = Math.max(0, Config.cache_group_commit_window_ms);
+        this.groupCommitMaxBatch = Math.max(1, Config.cache_group_commit_max_batch);
+        this.joinBatchWindowMs = Math.max(0, Config.cache_join_batch_window_ms);
+
+        for (var i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public void start() {
+        try {
+            storage.forEachRow(row -> {
+                leaderboard.update(row.uuid(), row.name(), row.balance());
+                moneySupply.add(row.balance());
+                accountCount.increment();
+            });
+        } catch (SQLException e) {
+            logger.at(Level.SEVERE).withCause(e).log("Failed to load the balance leaderboard");
+            throw new RuntimeException(e);
+        }
+
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "Economy-Flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (flushMode != FlushMode.SYNC) {
+            flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        }
+
+        flusher.scheduleWithFixedDelay(this::reconcileQuietly, reconcileIntervalMs, reconcileIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void shutdown() {
+        var executor = flusher;
+
+        if (executor != null) {
+            // Cleared first, so late changes stop handing it work while it winds down.
+            flusher = null;
+            executor.shutdown();
+
+            try {
+                executor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        try {
+            drainJoins();
+            flush();
+        } catch (SQLException e) {
+            logger.at(Level.SEVERE).withCause(e).log("Failed to flush balances on shutdown");
+        }
+    }
+
+    /**
+     * Writes every dirty account to storage in a single transaction.
+     *
+     * <p>Flushes are serialized, so an older snapshot can never overwrite a newer one.</p>
+     */
+    public void flush() throws SQLException {
+        flush(false);
+    }
+
+    /**
+     * Flushes, then compares the money supply and account count against the database.
+     *
+     * <p>The totals are captured together with the flushed snapshot, so once that snapshot is written the
+     * database must agree with them exactly. Any difference is drift and is applied as a correction.</p>
+     */
+    public void reconcile() throws SQLException {
+        flush(true);
+    }
+
+    private void flush(boolean reconcile) throws SQLException {
+        flushLock.lock();
+
+        try {
+            List<Storage.Row> rows;
+            long expectedSupply;
+            int expectedCount;
+
+            lockAll();
+
+            try {
+                flushQueued.set(false);
+                pendingOps.set(0);
+                expectedSupply = moneySupply.sum();
+                expectedCount = accountCount.intValue();
+
+                if (dirty.isEmpty() && !reconcile) {
+                    return;
+                }
+
+                rows = new ArrayList<>(dirty.size());
+
+                for (var uuid : dirty) {
+                    rows.add(accounts.get(uuid).toRow());
+                }
+
+                dirty.clear();
+            } finally {
+                unlockAll();
+            }
+
+            rank();
+
+            if (!rows.isEmpty()) {
+                try {
+                    storage.saveAll(rows);
+                } catch (SQLException e) {
+                    for (var row : rows) {
+                        dirty.add(row.uuid());
+                    }
+
+                    throw e;
+                }
+            }
+
+            if (reconcile) {
+                var supply = storage.totalBalance();
+                var count = storage.countRows();
+
+                if (supply != expectedSupply || count != expectedCount) {
+                    moneySupply.add(supply - expectedSupply);
+                    accountCount.add(count - expectedCount);
+                    logger.at(Level.WARNING).log("Reconciled economy totals: supply drift=" + (supply - expectedSupply) + ", count drift=" + (count - expectedCount));
+                }
+            }
+
+            evictLeaving();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.at(Level.SEVERE).withCause(e).log("Failed to flush balances, will retry");
+        }
+    }
+
+    /**
+     * Evicts the accounts of players who left, once they have no unflushed changes.
+     *
+     * <p>Holding the flush lock means no flush is in progress, so the stored row of every evicted account
+     * is current and reloading it later loses nothing.</p>
+     */
+    private void evictLeaving() {
+        evictionQueued.set(false);
+        flushLock.lock();
+        lockAll();
+
+        try {
+            for (var uuid : leaving) {
+                if (!dirty.contains(uuid)) {
+                    leaving.remove(uuid);
+
+                    var account = accounts.remove(uuid);
+
+                    if (account != null) {
+                        evictions++;
+
+                        if (account.name != null) {
+                            uuidsByName.remove(Storage.normalizeName(account.name), uuid);
+                        }
+                    }
+                }
+            }
+        } finally {
+            unlockAll();
+            flushLock.unlock();
+        }
+    }
+
+    private void reconcileQuietly() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            logger.at(Level.SEVERE).withCause(e).log("Failed to reconcile economy totals");
+        }
+    }
+
+    /**
+     * Checks whether an account is resident in memory, meaning reads of it never touch storage.
+     */
+    public boolean isLoaded(UUID uuid) {
+        return accounts.containsKey(uuid);
+    }
+
+    /**
+     * Checks whether mutations are acknowledged before they are written to storage.
+     */
+    public boolean isWriteBehind() {
+        return flushMode != FlushMode.SYNC;
+    }
+
+    public Storage.Row getRow(UUID uuid) throws SQLException {
+        var account = accounts.get(uuid);
+
+        if (account != null) {
+            return account.toRow();
+        }
+
+        var row = storage.getRow(uuid);
+
+        if (row != null) {
+            return row;
+        }
+
+        account = joins.containsKey(uuid) ? openJoined(uuid) : accounts.get(uuid);
+        return account == null ? null : account.toRow();
+    }
+
+    public Storage.Row getRow(String name) throws SQLException {
+        var key = Storage.normalizeName(name);
+        var uuid = uuidsByName.get(key);
+
+        if (uuid != null) {
+            var account = accounts.get(uuid);
+
+            if (account != null && key.equals(Storage.normalizeName(account.name))) {
+                return account.toRow();
+            }
+
+            uuidsByName.remove(key, uuid);
+        }
+
+        for (var entry : joins.entrySet()) {
+            if (key.equals(Storage.normalizeName(entry.getValue().name()))) {
+                var account = openJoined(entry.getKey());
+
+                if (account != null) {
+                    return account.toRow();
+                }
+            }
+        }
+
+        // Every name assigned in memory is in the map, so storage can only be missing renames we already know about.
+        var row = storage.getRow(name);
+
+        if (row == null) {
+            return null;
+        }
+
+        var account = accounts.get(row.uuid());
+
+        if (account == null) {
+            return row;
+        }
+
+        if (!key.equals(Storage.normalizeName(account.name))) {
+            return null;
+        }
+
+        uuidsByName.putIfAbsent(key, account.uuid);
+        return account.toRow();
+    }
+
+    public boolean exists(String name) throws SQLException {
+        return getRow(name) != null;
+    }
+
+    public boolean setBalance(UUID actor, UUID uuid, String name, long amount) throws SQLException {
+        load(uuid);
+
+        var stripe = stripe(uuid);
+        stripe.lock();
+
+        try {
+            var account = resident(uuid);
+
+            if (account == null) {
+                account = create(uuid);
+            }
+
+            rename(account, name);
+            ledger.record(Ledger.Type.SET, uuid, actor, null, amount - account.balance, amount);
+            moneySupply.add(amount - account.balance);
+            account.balance = amount;
+            changed(account);
+        } finally {
+            stripe.unlock();
+        }
+
+        afterMutation();
+        return true;
+    }
+
+    public long give(UUID actor, UUID uuid, String name, long amount) throws SQLException {
+        load(uuid);
+        long balance;
+
+        var stripe = stripe(uuid);
+        stripe.lock();
+
+        try {
+            var account = resident(uuid);
+            balance = Math.addExact(account == null ? 0 : account.balance, amount);
+
+            if (account == null) {
+                account = create(uuid);
+            }
+
+            rename(account, name);
+            account.balance = balance;
+            moneySupply.add(amount);
+            changed(account);
+            ledger.record(Ledger.Type.GIVE, uuid, actor, null, amount, balance);
+        } finally {
+            stripe.unlock();
+        }
+
+        afterMutation();
+        return balance;
+    }
+
+    public Storage.TakeResult takeIfEnough(UUID actor, UUID uuid, String name, long amount) throws SQLException {
+        var account = load(uuid);
+
+        if (account == null) {
+            return new Storage.TakeResult(false, 0, Storage.TakeResult.Reason.NOT_FOUND);
+        }
+
+        long balance;
+
+        var stripe = stripe(uuid);
+        stripe.lock();
+
+        try {
+            account = resident(uuid);
+            balance = account.balance;
+
+            if (balance < amount) {
+                return new Storage.TakeResult(false, balance, Storage.TakeResult.Reason.NOT_ENOUGH);
+            }
+
+            rename(account, name);
+            balance -= amount;
+            account.balance = balance;
+            moneySupply.add(-amount);
+            changed(account);
+            ledger.record(Ledger.Type.TAKE, uuid, actor, null, -amount, balance);
+        } finally {
+            stripe.unlock();
+        }
+
+        afterMutation();
+        return new Storage.TakeResult(true, balance, Storage.TakeResult.Reason.SUCCESS);
+    }
+
+    public boolean transfer(UUID actor, UUID fromUUID, String fromName, UUID toUUID, String toName, long amount) throws SQLException {
+        var from = load(fromUUID);
+
+        if (from == null) {
+            return false;
+        }
+
+        load(toUUID);
+
+        var fromStripe = stripeIndex(fromUUID);
+        var toStripe = stripeIndex(toUUID);
+        lock(fromStripe, toStripe);
+
+        try {
+            from = resident(fromUUID);
+            var to = resident(toUUID);
+
+            if (from.balance < amount) {
+                return false;
+            }
+
+            // Checked before anything changes, so an overflow leaves no half-made account behind.
+            var toBalance = Math.addExact(to == null ? 0 : to.balance, amount);
+
+            if (to == null) {
+                to = create(toUUID);
+            }
+
+            rename(from, fromName);
+            rename(to, toName);
+            to.balance = toBalance;
+            from.balance -= amount;
+            changed(from);
+            changed(to);
+            ledger.record(Ledger.Type.TRANSFER_OUT, fromUUID, actor, toUUID, -amount, from.balance);
+            ledger.record(Ledger.Type.TRANSFER_IN, toUUID, actor, fromUUID, amount, to.balance);
+        } finally {
+            unlock(fromStripe, toStripe);
+        }
+
+        afterMutation();
+        return true;
+    }
+
+    public void insertOrUpdateName(UUID uuid, String name, long startingBalance) throws SQLException {
+        load(uuid);
+
+        var stripe = stripe(uuid);
+        stripe.lock();
+
+        try {
+            upsert(uuid, name, startingBalance);
+        } finally {
+            stripe.unlock();
+        }
+
+        afterMutation();
+    }
+
+    /**
+     * Queues {@link #insertOrUpdateName} for a connecting player and returns immediately.
+     */
+    public void join(UUID uuid, String name, long startingBalance) {
+        leaving.remove(uuid);
+        joins.put(uuid, new Join(name, startingBalance));
+
+        var executor = flusher;
+
+        if (executor != null && joinsQueued.compareAndSet(false, true)) {
+            executor.schedule(this::drainJoinsQuietly, joinBatchWindowMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Marks a player as gone, so their account is evicted once flushed.
+     */
+    public void quit(UUID uuid) {
+        leaving.add(uuid);
+
+        var executor = flusher;
+
+        if (executor != null && evictionQueued.compareAndSet(false, true)) {
+            executor.execute(this::evictLeaving);
+        }
+    }
+
+    /**
+     * Loads and upserts every queued join, then saves them in one transaction in {@link FlushMode#SYNC} mode.
+     * Other modes leave the save to the regular flush.
+     *
+     * <p>A join is taken out of the queue under its stripe, like in {@link #openJoined}, so it is applied
+     * exactly once whichever comes first.</p>
+     */
+    private void drainJoins() throws SQLException {
+        joinsQueued.set(false);
+
+        var batch = List.copyOf(joins.keySet());
+
+        for (var uuid : batch) {
+            load(uuid);
+        }
+
+        for (var uuid : batch) {
+            var stripe = stripe(uuid);
+            stripe.lock();
+
+            try {
+                var join = joins.remove(uuid);
+
+                if (join != null) {
+                    upsert(uuid, join.name(), join.startingBalance());
+                }
+            } finally {
+                stripe.unlock();
+            }
+        }
+
+        // Also saves joins that a read applied early, which did not flush them.
+        if (flushMode == FlushMode.SYNC) {
+            flush();
+        }
+    }
+
+    private void drainJoinsQuietly() {
+        try {
+            drainJoins();
+        } catch (Exception e) {
+            logger.at(Level.SEVERE).withCause(e).log("Failed to load joining players, will retry");
+
+            var executor = flusher;
+
+            if (!joins.isEmpty() && executor != null && joinsQueued.compareAndSet(false, true)) {
+                executor.schedule(this::drainJoinsQuietly, Math.max(joinBatchWindowMs, flushIntervalMs), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Applies net balance changes to several accounts all-or-nothing.
+     *
+     * <p>Every account with a negative delta must exist and cover it; accounts receiving money are created
+     * if needed. The changes become visible, and are flushed, together.</p>
+     */
+    public BatchResult applyBatch(UUID actor, Map<UUID, Long> deltas) throws SQLException {
+        for (var uuid : deltas.keySet()) {
+            load(uuid);
+        }
+
+        var balances = new LinkedHashMap<UUID, Long>(deltas.size());
+        var locked = stripeIndexes(deltas.keySet());
+
+        for (var index : locked) {
+            stripes[index].lock();
+        }
+
+        try {
+            for (var entry : deltas.entrySet()) {
+                var account = resident(entry.getKey());
+                var delta = (long) entry.getValue();
+
+                if (account == null) {
+                    if (delta < 0) {
+                        return new BatchResult(false, Map.of(), entry.getKey(), Storage.TakeResult.Reason.NOT_FOUND);
+                    }
+
+                    balances.put(entry.getKey(), delta);
+                    continue;
+                }
+
+                if (delta < 0 && account.balance < -delta) {
+                    return new BatchResult(false, Map.of(), entry.getKey(), Storage.TakeResult.Reason.NOT_ENOUGH);
+                }
+
+                balances.put(entry.getKey(), Math.addExact(account.balance, delta));
+            }
+
+            for (var entry : balances.entrySet()) {
+                var account = create(entry.getKey());
+                ledger.record(Ledger.Type.BATCH, entry.getKey(), actor, null, entry.getValue() - account.balance, entry.getValue());
+                moneySupply.add(entry.getValue() - account.balance);
+                account.balance = entry.getValue();
+                changed(account);
+            }
+        } finally {
+            for (var index : locked) {
+                stripes[index].unlock();
+            }
+        }
+
+        afterMutation();
+        return new BatchResult(true, balances, null, Storage.TakeResult.Reason.SUCCESS);
+    }
+
+    /**
+     * Applies one change to every account, {@code chunkSize} accounts at a time in {@link Storage#UUID_ORDER}.
+     *
+     * <p>Each chunk is one set-based {@link Storage#adjustAfter} transaction. It runs with no flush in
+     * progress and every stripe held, and resident accounts get the same change in memory, so memory and
+     * storage agree afterwards. Other mutations wait for at most one chunk.</p>
+     */
+    public BulkResult adjustAll(UUID actor, Storage.Adjustment adjustment, long amount, int chunkSize) throws SQLException {
+        var counts = new int[2];
+        UUID after = null;
+
+        do {
+            after = adjustChunk(actor, adjustment, amount, after, Math.max(1, chunkSize), counts);
+            afterMutation();
+        } while (after != null);
+
+        return new BulkResult(counts[0], counts[1]);
+    }
+
+    /**
+     * Applies one change to some accounts, taking the stripes of {@code chunkSize} accounts at a time. A give
+     * or set creates missing accounts, as for a single account.
+     */
+    public BulkResult adjust(UUID actor, Storage.Adjustment adjustment, long amount, Collection<UUID> uuids, int chunkSize) throws SQLException {
+        var targets = new ArrayList<>(uuids);
+        var changed = 0;
+        var skipped = 0;
+
+        for (var from = 0; from < targets.size(); from += Math.max(1, chunkSize)) {
+            var chunk = targets.subList(from, Math.min(targets.size(), from + Math.max(1, chunkSize)));
+
+            for (var uuid : chunk) {
+                load(uuid);
+            }
+
+            var indexes = stripeIndexes(chunk);
+
+            for (var index : indexes) {
+                stripes[index].lock();
+            }
+
+            try {
+                for (var uuid : chunk) {
+                    var account = resident(uuid);
+
+                    if (account == null && adjustment != Storage.Adjustment.TAKE) {
+                        account = create(uuid);
+                    }
+
+                    if (account != null && adjust(actor, account, adjustment, amount)) {
+                        changed++;
+                    } else {
+                        skipped++;
+                    }
+                }
+            } finally {
+                for (var index : indexes) {
+                    stripes[index].unlock();
+                }
+            }
+
+            afterMutation();
+        }
+
+        return new BulkResult(changed, skipped);
+    }
+
+    /**
+     * Runs one chunk of {@link #adjustAll}. Returns the last key of the chunk, or null once the table is done.
+     */
+    private UUID adjustChunk(UUID actor, Storage.Adjustment adjustment, long amount, UUID after, int limit, int[] counts) throws SQLException {
+        flushLock.lock();
+        lockAll();
+
+        try {
+            // Accounts created since the last flush are only in memory.
+            var pending = new ArrayList<UUID>();
+
+            for (var uuid : dirty) {
+                if (after == null || Storage.UUID_ORDER.compare(uuid, after) > 0) {
+                    pending.add(uuid);
+                }
+            }
+
+            var rows = storage.adjustAfter(after, limit, adjustment, amount);
+            var last = rows.size() < limit ? null : rows.get(rows.size() - 1).uuid();
+            var seen = new HashSet<UUID>(rows.size() * 2);
+
+            // Loads that read storage before this chunk must read it again.
+            evictions++;
+
+            for (var row : rows) {
+                seen.add(row.uuid());
+
+                var account = accounts.get(row.uuid());
+
+                if (account != null) {
+                    if (adjust(actor, account, adjustment, amount)) {
+                        counts[0]++;
+                    } else {
+                        // Memory is newer than what the UPDATE saw, so the next flush must overwrite it either way.
+                        changed(account);
+                        counts[1]++;
+                    }
+
+                    continue;
+                }
+
+                if (!adjustment.appliesTo(row.balance(), amount)) {
+                    counts[1]++;
+                    continue;
+                }
+
+                var balance = adjustment.apply(row.balance(), amount);
+                moneySupply.add(balance - row.balance());
+                leaderboard.update(row.uuid(), null, balance);
+                ledger.record(ledgerType(adjustment), row.uuid(), actor, null, balance - row.balance(), balance);
+                counts[0]++;
+            }
+
+            for (var uuid : pending) {
+                var account = accounts.get(uuid);
+
+                if (account != null && !seen.contains(uuid) && (last == null || Storage.UUID_ORDER.compare(uuid, last) <= 0)) {
+                    if (adjust(actor, account, adjustment, amount)) {
+                        counts[0]++;
+                    } else {
+                        counts[1]++;
+                    }
+                }
+            }
+
+            return last;
+        } finally {
+            unlockAll();
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Runs a change that computes each account's new balance from its current one, such as a recurring job,
+     * on the {@code limit} accounts following {@code after} in {@link Storage#UUID_ORDER}.
+     *
+     * <p>As with {@link #adjustAll}, the chunk runs with no flush in progress and every stripe held. The
+     * rewrite stores the new balances itself, so resident accounts are updated in memory without becoming
+     * dirty. Each change is recorded in the ledger as {@code type}.</p>
+     */
+    public RewriteResult rewrite(UUID after, int limit, Ledger.Type type, Rewrite rewrite) throws SQLException {
+        flushLock.lock();
+        lockAll();
+
+        try {
+            var stored = storage.getRowsAfter(after, limit);
+            var last = stored.size() < limit ? null : stored.get(stored.size() - 1).uuid();
+            var page = new TreeMap<UUID, Storage.Row>(Storage.UUID_ORDER);
+            var pending = new HashSet<UUID>();
+
+            for (var row : stored) {
+                var account = accounts.get(row.uuid());
+                page.put(row.uuid(), account != null ? account.toRow() : row);
+            }
+
+            for (var uuid : dirty) {
+                var account = accounts.get(uuid);
+
+                if (account != null && (after == null || Storage.UUID_ORDER.compare(uuid, after) > 0) && (last == null || Storage.UUID_ORDER.compare(uuid, last) <= 0)) {
+                    page.put(uuid, account.toRow());
+                    pending.add(uuid);
+                }
+            }
+
+            var balances = rewrite.run(new ArrayList<>(page.values()), pending, last);
+
+            // Loads that read storage before this chunk must read it again.
+            evictions++;
+
+            for (var entry : balances.entrySet()) {
+                var row = page.get(entry.getKey());
+
+                if (row == null) {
+                    continue;
+                }
+
+                var balance = (long) entry.getValue();
+                var account = accounts.get(row.uuid());
+
+                if (account != null) {
+                    account.balance = balance;
+                    unranked.put(account.uuid, account);
+                } else {
+                    leaderboard.update(row.uuid(), null, balance);
+                }
+
+                moneySupply.add(balance - row.balance());
+                ledger.record(type, row.uuid(), null, null, balance - row.balance(), balance);
+            }
+
+            return new RewriteResult(last, balances.size());
+        } finally {
+            unlockAll();
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Applies a bulk change to a resident account while holding its stripe. Returns false if it does not apply.
+     */
+    private boolean adjust(UUID actor, Account account, Storage.Adjustment adjustment, long amount) {
+        var balance = account.balance;
+
+        if (!adjustment.appliesTo(balance, amount)) {
+            return false;
+        }
+
+        var updated = adjustment.apply(balance, amount);
+        account.balance = updated;
+        moneySupply.add(updated - balance);
+        changed(account);
+        ledger.record(ledgerType(adjustment), account.uuid, actor, null, updated - balance, updated);
+        return true;
+    }
+
+    private static Ledger.Type ledgerType(Storage.Adjustment adjustment) {
+        return switch (adjustment) {
+            case GIVE -> Ledger.Type.GIVE;
+            case TAKE -> Ledger.Type.TAKE;
+            case SET -> Ledger.Type.SET;
+        };
+    }
+
+    public List<Storage.Row> getTop(int limit, int offset) {
+        rank();
+        return leaderboard.range(offset, offset + limit);
+    }
+
+    /**
+     * Gets up to {@code limit} leaderboard entries ranked after an account that held {@code balance}, ties
+     * broken by UUID. Unlike {@link #getTop}, a walk resumed this way does not shift when accounts above the
+     * last entry move.
+     */
+    public List<Storage.Row> getTopAfter(long balance, UUID uuid, int limit) {
+        rank();
+        return leaderboard.after(balance, uuid, limit);
+    }
+
+    /**
+     * Gets up to {@code limit} accounts following {@code after} in {@link Storage#UUID_ORDER}, or the first
+     * ones if it is null, with their current balances.
+     *
+     * <p>The page is read from storage while no flush is running, so every account is either stored or still
+     * dirty. Dirty accounts in the page's key range are merged in, so accounts created since the last flush are
+     * not skipped. The page may therefore hold a few more than {@code limit} accounts.</p>
+     */
+    public List<Storage.Row> getRowsAfter(UUID after, int limit) throws SQLException {
+        var page = new TreeMap<UUID, Storage.Row>(Storage.UUID_ORDER);
+        List<Storage.Row> stored;
+        var pending = new ArrayList<UUID>();
+
+        flushLock.lock();
+
+        try {
+            for (var uuid : dirty) {
+                if (after == null || Storage.UUID_ORDER.compare(uuid, after) > 0) {
+                    pending.add(uuid);
+                }
+            }
+
+            stored = storage.getRowsAfter(after, limit);
+        } finally {
+            flushLock.unlock();
+        }
+
+        // A full page ends at its last key; a short one reached the end of the table.
+        var last = stored.size() < limit ? null : stored.get(stored.size() - 1).uuid();
+
+        for (var row : stored) {
+            var account = accounts.get(row.uuid());
+            page.put(row.uuid(), account != null ? account.toRow() : row);
+        }
+
+        for (var uuid : pending) {
+            var account = accounts.get(uuid);
+
+            if (account != null && (last == null || Storage.UUID_ORDER.compare(uuid, last) <= 0)) {
+                page.put(uuid, account.toRow());
+            }
+        }
+
+        return new ArrayList<>(page.values());
+    }
+
+    /**
+     * Gets the 1-based leaderboard rank of an account, or 0 if it has no account.
+     */
+    public int getRank(UUID uuid) {
+        rank();
+        return leaderboard.rank(uuid);
+    }
+
+    /**
+     * Gets the sum of every account's balance, in minor units.
+     */
+    public long getMoneySupply() {
+        return moneySupply.sum();
+    }
+
+    /**
+     * Gets the number of accounts.
+     */
+    public int getAccountCount() {
+        return accountCount.intValue();
+    }
+
+    private Account load(UUID uuid) throws SQLException {
+        var account = accounts.get(uuid);
+
+        if (account != null) {
+            return account;
+        }
+
+        var epoch = evictions;
+        var row = storage.getRow(uuid);
+
+        if (row == null) {
+            return joins.containsKey(uuid) ? openJoined(uuid) : accounts.get(uuid);
+        }
+
+        return cache(row, epoch);
+    }
+
+    /**
+     * Applies a player's queued join now, if it is still queued, and gets their account. Anything that looks
+     * the account up before the join is drained would otherwise find none, or create it without its starting
+     * balance.
+     */
+    private Account openJoined(UUID uuid) throws SQLException {
+        var stripe = stripe(uuid);
+        stripe.lock();
+
+        try {
+            var join = joins.remove(uuid);
+
+            if (join != null) {
+                upsert(uuid, join.name(), join.startingBalance());
+            }
+
+            return accounts.get(uuid);
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Gets an account while holding its stripe. Mutators load accounts before locking, so this only reads
+     * storage when the account was evicted in between.
+     */
+    private Account resident(UUID uuid) throws SQLException {
+        var account = accounts.get(uuid);
+        return account != null ? account : load(uuid);
+    }
+
+    /**
+     * Caches a row read from storage while the eviction count was {@code epoch}.
+     */
+    private Account cache(Storage.Row row, long epoch) throws SQLException {
+        var stripe = stripe(row.uuid());
+        stripe.lock();
+
+        try {
+            var existing = accounts.get(row.uuid());
+
+            if (existing != null) {
+                return existing;
+            }
+
+            // An eviction or bulk change since the read may have stored a newer balance, so read it again now that none can run.
+            if (evictions != epoch) {
+                row = storage.getRow(row.uuid());
+            }
+
+            var account = new Account(row.uuid(), row.name(), row.balance());
+            accounts.put(row.uuid(), account);
+
+            if (account.name != null) {
+                uuidsByName.putIfAbsent(Storage.normalizeName(account.name), account.uuid);
+            }
+
+            return account;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Creates a player's account with the starting balance, or renames an existing one. Requires its stripe.
+     */
+    private void upsert(UUID uuid, String name, long startingBalance) throws SQLException {
+        var account = resident(uuid);
+
+        if (account == null) {
+            account = create(uuid);
+            account.balance = startingBalance;
+            moneySupply.add(startingBalance);
+            ledger.record(Ledger.Type.OPEN, uuid, null, null, startingBalance, startingBalance);
+        }
+
+        rename(account, name);
+        changed(account);
+    }
+
+    private Account create(UUID uuid) {
+        var account = accounts.get(uuid);
+
+        if (account == null) {
+            account = new Account(uuid, null, 0);
+            accounts.put(uuid, account);
+            accountCount.increment();
+        }
+
+        return account;
+    }
+
+    private void rename(Account account, String name) {
+        if (name != null) {
+            account.name = name;
+            uuidsByName.put(Storage.normalizeName(name), account.uuid);
+        }
+    }
+
+    private void changed(Account account) {
+        dirty.add(account.uuid);
+        unranked.put(account.uuid, account);
+
+        if (flushMode != FlushMode.OPS) {
+            return;
+        }
+
+        var executor = flusher;
+
+        if (executor != null && pendingOps.incrementAndGet() >= flushOps && flushQueued.compareAndSet(false, true)) {
+            executor.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * Moves every account changed since the last call to its current position on the leaderboard.
+     *
+     * <p>Each entry is removed before its balance is read, so a change racing with this call is either
+     * applied now or left for the next call.</p>
+     */
+    private void rank() {
+        if (unranked.isEmpty()) {
+            return;
+        }
+
+        synchronized (leaderboard) {
+            for (var entry : unranked.entrySet()) {
+                var account = entry.getValue();
+
+                if (unranked.remove(entry.getKey(), account)) {
+                    leaderboard.update(account.uuid, account.name, account.balance);
+                }
+            }
+        }
+    }
+
+    private ReentrantLock stripe(UUID uuid) {
+        return stripes[stripeIndex(uuid)];
+    }
+
+    private static int stripeIndex(UUID uuid) {
+        var hash = uuid.hashCode();
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+
+    /**
+     * Gets the distinct stripes of some accounts in the order they must be locked.
+     */
+    private static int[] stripeIndexes(Collection<UUID> uuids) {
+        var indexes = new int[uuids.size()];
+        var count = 0;
+
+        for (var uuid : uuids) {
+            indexes[count++] = stripeIndex(uuid);
+        }
+
+        Arrays.sort(indexes);
+        count = 0;
+
+        for (var i = 0; i < indexes.length; i++) {
+            if (i == 0 || indexes[i] != indexes[i - 1]) {
+                indexes[count++] = indexes[i];
+            }
+        }
+
+        return Arrays.copyOf(indexes, count);
+    }
+
+    /**
+     * Locks two stripes, lower index first. The same stripe is locked once.
+     */
+    private void lock(int a, int b) {
+        stripes[Math.min(a, b)].lock();
+
+        if (a != b) {
+            stripes[Math.max(a, b)].lock();
+        }
+    }
+
+    private void unlock(int a, int b) {
+        stripes[a].unlock();
+
+        if (a != b) {
+            stripes[b].unlock();
+        }
+    }
+
+    private void lockAll() {
+        for (var stripe : stripes) {
+            stripe.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (var stripe : stripes) {
+            stripe.unlock();
+        }
+    }
+
+    private void afterMutation() throws SQLException {
+        if (flushMode != FlushMode.SYNC) {
+            return;
+        }
+
+        var executor = flusher;
+
+        if (groupCommitWindowMs == 0 || executor == null) {
+            flush();
+            return;
+        }
+
+        CompletableFuture<Void> commit;
+
+        groupLock.lock();
+
+        try {
+            commit = group;
+
+            if (commit == null) {
+                commit = new CompletableFuture<>();
+                group = commit;
+                groupSize = 0;
+
+                var scheduled = commit;
+                executor.schedule(() -> commitGroup(scheduled), groupCommitWindowMs, TimeUnit.MILLISECONDS);
+            }
+
+            if (++groupSize == groupCommitMaxBatch) {
+                var full = commit;
+                executor.execute(() -> commitGroup(full));
+            }
+        } finally {
+            groupLock.unlock();
+        }
+
+        try {
+            commit.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for commit", e);
+        } catch (ExecutionException e) {
+            var cause = e.getCause();
+
+            if (cause instanceof SQLException sql) {
+                throw sql;
+            }
+
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+
+            throw new SQLException(cause);
+        }
+    }
+
+    /**
+     * Closes a commit group and flushes every change made before it closed, then releases its waiters.
+     * Runs once per group, whichever of the window timer and the batch limit fires first.
+     */
+    private void commitGroup(CompletableFuture<Void> commit) {
+        groupLock.lock();
+
+        try {
+            if (group != commit) {
+                return;
+            }
+
+            group = null;
+        } finally {
+            groupLock.unlock();
+        }
+
+        try {
+            flush();
+            commit.complete(null);
+        } catch (Throwable t) {
+            commit.completeExceptionally(t);
+        }
+    }
+}
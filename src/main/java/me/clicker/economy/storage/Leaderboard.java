@@ -0,0 +1,258 @@
+package me.clicker.economy.storage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * In-memory balance ranking of every account.
+ *
+ * <p>Backed by an order-statistic treap keyed by (balance descending, uuid), so updates and rank
+ * lookups are O(log n) and reading a page of {@code k} entries is O(log n + k), regardless of how deep
+ * the page is. All methods are synchronized.</p>
+ */
+public class Leaderboard {
+    private final Map<UUID, Node> nodes = new HashMap<>();
+    private Node root;
+    private long seed = System.nanoTime() | 1;
+
+    private static final class Node {
+        private final UUID uuid;
+        private final String name;
+        private final long balance;
+        private final int priority;
+        private int size = 1;
+        private Node left;
+        private Node right;
+
+        private Node(UUID uuid, String name, long balance, int priority) {
+            this.uuid = uuid;
+            this.name = name;
+            this.balance = balance;
+            this.priority = priority;
+        }
+    }
+
+    public synchronized int size() {
+        return size(root);
+    }
+
+    /**
+     * Inserts an account or moves it to the position for its new balance.
+     */
+    public synchronized void update(UUID uuid, String name, long balance) {
+        var old = nodes.get(uuid);
+
+        if (old != null) {
+            if (old.balance == balance && (name == null || name.equals(old.name))) {
+                return;
+            }
+
+            root = remove(root, old);
+        }
+
+        var node = new Node(uuid, name != null ? name : old != null ? old.name : null, balance, nextPriority());
+        nodes.put(uuid, node);
+        root = insert(root, node);
+    }
+
+    public synchronized void remove(UUID uuid) {
+        var old = nodes.remove(uuid);
+
+        if (old != null) {
+            root = remove(root, old);
+        }
+    }
+
+    /**
+     * Gets the 1-based rank of an account, or 0 if it is not ranked.
+     */
+    public synchronized int rank(UUID uuid) {
+        var target = nodes.get(uuid);
+
+        if (target == null) {
+            return 0;
+        }
+
+        var rank = 1;
+        var node = root;
+
+        while (node != null) {
+            var cmp = compare(target, node);
+
+            if (cmp == 0) {
+                return rank + size(node.left);
+            }
+
+            if (cmp < 0) {
+                node = node.left;
+            } else {
+                rank += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Gets the accounts at zero-based positions {@code from} (inclusive) to {@code to} (exclusive).
+     */
+    public synchronized List<Storage.Row> range(int from, int to) {
+        from = Math.max(0, from);
+        to = Math.min(to, size(root));
+
+        var out = new ArrayList<Storage.Row>(Math.max(0, to - from));
+        collect(root, 0, from, to, out);
+        return out;
+    }
+
+    /**
+     * Gets up to {@code limit} accounts ranked after the position of {@code balance} and {@code uuid}, in
+     * O(log n + limit) whether or not that account still holds that balance.
+     */
+    public synchronized List<Storage.Row> after(long balance, UUID uuid, int limit) {
+        var out = new ArrayList<Storage.Row>(Math.max(0, Math.min(limit, size(root))));
+        collectAfter(root, balance, uuid, limit, out);
+        return out;
+    }
+
+    private static void collectAfter(Node node, long balance, UUID uuid, int limit, List<Storage.Row> out) {
+        if (node == null || out.size() >= limit) {
+            return;
+        }
+
+        if (compare(balance, uuid, node) >= 0) {
+            collectAfter(node.right, balance, uuid, limit, out);
+            return;
+        }
+
+        collectAfter(node.left, balance, uuid, limit, out);
+
+        if (out.size() < limit) {
+            out.add(new Storage.Row(node.uuid, node.name != null ? node.name : "", node.balance));
+            collectAfter(node.right, balance, uuid, limit, out);
+        }
+    }
+
+    private static void collect(Node node, int offset, int from, int to, List<Storage.Row> out) {
+        if (node == null || offset >= to || offset + node.size <= from) {
+            return;
+        }
+
+        collect(node.left, offset, from, to, out);
+
+        var index = offset + size(node.left);
+
+        if (index >= from && index < to) {
+            out.add(new Storage.Row(node.uuid, node.name != null ? node.name : "", node.balance));
+        }
+
+        collect(node.right, index + 1, from, to, out);
+    }
+
+    private static Node insert(Node node, Node item) {
+        if (node == null) {
+            return item;
+        }
+
+        if (item.priority > node.priority) {
+            var halves = split(node, item);
+            item.left = halves[0];
+            item.right = halves[1];
+            return resize(item);
+        }
+
+        if (compare(item, node) < 0) {
+            node.left = insert(node.left, item);
+        } else {
+            node.right = insert(node.right, item);
+        }
+
+        return resize(node);
+    }
+
+    private static Node remove(Node node, Node item) {
+        if (node == null) {
+            return null;
+        }
+
+        if (node == item) {
+            return merge(node.left, node.right);
+        }
+
+        if (compare(item, node) < 0) {
+            node.left = remove(node.left, item);
+        } else {
+            node.right = remove(node.right, item);
+        }
+
+        return resize(node);
+    }
+
+    /**
+     * Splits a subtree into nodes ordered before {@code key} and nodes ordered after it.
+     */
+    private static Node[] split(Node node, Node key) {
+        if (node == null) {
+            return new Node[2];
+        }
+
+        if (compare(node, key) < 0) {
+            var halves = split(node.right, key);
+            node.right = halves[0];
+            halves[0] = resize(node);
+            return halves;
+        }
+
+        var halves = split(node.left, key);
+        node.left = halves[1];
+        halves[1] = resize(node);
+        return halves;
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+
+        if (right == null) {
+            return left;
+        }
+
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            return resize(left);
+        }
+
+        right.left = merge(left, right.left);
+        return resize(right);
+    }
+
+    private static int compare(Node a, Node b) {
+        return compare(a.balance, a.uuid, b);
+    }
+
+    private static int compare(long balance, UUID uuid, Node node) {
+        var cmp = Long.compare(node.balance, balance);
+        return cmp != 0 ? cmp : uuid.compareTo(node.uuid);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static Node resize(Node node) {
+        node.size = 1 + size(node.left) + size(node.right);
+        return node;
+    }
+
+    private int nextPriority() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        seed ^= seed << 17;
+        return (int) (seed >>> 32);
+    }
+}
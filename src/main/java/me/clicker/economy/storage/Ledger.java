@@ -0,0 +1,457 @@
+package me.clicker.economy.storage;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import me.clicker.economy.EconomyPlugin;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+/**
+ * Append-only audit trail of every balance change.
+ *
+ * <p>Mutations only add an {@link Entry} to a lock-free queue; a background thread wakes every few
+ * milliseconds, drains the queue in batches and writes fixed-size records into memory-mapped segment files,
+ * so recording never waits on disk or wakes another thread.</p>
+ *
+ * <p>Each record points back to the previous record of the same account in its segment, and each segment
+ * has a per-account index of the newest record and the record count. Reading one account's history
+ * therefore follows only that account's records and skips whole segments by count. The index of the
+ * active segment lives in memory and is rebuilt by scanning it on startup; sealed segments store theirs
+ * next to them in a {@code .idx} file sorted by UUID.</p>
+ */
+public class Ledger {
+    private static final int RECORD_SIZE = 80;
+    private static final int INDEX_ENTRY_SIZE = 24;
+    private static final int BATCH_SIZE = 4096;
+    private static final long DRAIN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private static final int TYPE = 0;
+    private static final int PREV = 4;
+    private static final int TIME = 8;
+    private static final int ACCOUNT = 16;
+    private static final int ACTOR = 32;
+    private static final int COUNTERPARTY = 48;
+    private static final int AMOUNT = 64;
+    private static final int BALANCE = 72;
+
+    // Signed, unlike Storage.UUID_ORDER. Segment indexes on disk are sorted this way, so it must not change.
+    private static final Comparator<UUID> INDEX_ORDER = Comparator.comparingLong(UUID::getMostSignificantBits).thenComparingLong(UUID::getLeastSignificantBits);
+
+    private final HytaleLogger logger;
+    private final Path dir;
+    private final boolean enabled;
+    private final int segmentRecords;
+    private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final List<Segment> sealed = new ArrayList<>();
+    private Segment active;
+    private Thread writer;
+    private volatile boolean running;
+
+    public enum Type {
+        OPEN,
+        GIVE,
+        TAKE,
+        SET,
+        TRANSFER_OUT,
+        TRANSFER_IN,
+        BATCH,
+        TAX,
+        INTEREST,
+        DECAY
+    }
+
+    /**
+     * One balance change. {@code amount} is the signed change in minor units and {@code balance} the
+     * resulting balance; {@code actor} is null for the console or the API.
+     */
+    public record Entry(long time, Type type, UUID account, UUID actor, UUID counterparty, long amount, long balance) {}
+
+    private static final class Segment {
+        private final long id;
+        private final Path file;
+        private MappedByteBuffer data;
+        private MappedByteBuffer index;
+        private Map<UUID, int[]> heads;
+        private int count;
+
+        private Segment(long id, Path file) {
+            this.id = id;
+            this.file = file;
+        }
+
+        /**
+         * Gets {newest record, record count} for an account, or null if it has no records here.
+         */
+        private int[] lookup(UUID uuid) {
+            if (heads != null) {
+                return heads.get(uuid);
+            }
+
+            var low = 0;
+            var high = index.capacity() / INDEX_ENTRY_SIZE - 1;
+
+            while (low <= high) {
+                var mid = (low + high) >>> 1;
+                var at = mid * INDEX_ENTRY_SIZE;
+                var cmp = INDEX_ORDER.compare(new UUID(index.getLong(at), index.getLong(at + 8)), uuid);
+
+                if (cmp == 0) {
+                    return new int[] {index.getInt(at + 16), index.getInt(at + 20)};
+                }
+
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+
+            return null;
+        }
+    }
+
+    public Ledger(Path dir, boolean enabled, int segmentSizeMb) {
+        this(dir, enabled, segmentSizeMb, EconomyPlugin.getInstance().getLogger());
+    }
+
+    public Ledger(Path dir, boolean enabled, int segmentSizeMb, HytaleLogger logger) {
+        this.logger = logger;
+        this.dir = dir;
+        this.enabled = enabled;
+        this.segmentRecords = Math.max(1, segmentSizeMb) * 1024 * 1024 / RECORD_SIZE;
+    }
+
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            Files.createDirectories(dir);
+
+            var files = new ArrayList<Path>();
+
+            try (var stream = Files.newDirectoryStream(dir, "*.seg")) {
+                stream.forEach(files::add);
+            }
+
+            files.sort(Comparator.comparing(Path::toString));
+
+            for (var i = 0; i < files.size(); i++) {
+                var file = files.get(i);
+                var name = file.getFileName().toString();
+                var segment = new Segment(Long.parseLong(name.substring(0, name.length() - 4)), file);
+
+                if (Files.exists(indexFile(segment))) {
+                    segment.index = map(indexFile(segment), FileChannel.MapMode.READ_ONLY, Files.size(indexFile(segment)));
+                    sealed.add(segment);
+                    continue;
+                }
+
+                recover(segment);
+
+                if (i < files.size() - 1) {
+                    seal(segment);
+                } else {
+                    active = segment;
+                }
+            }
+
+            if (active == null) {
+                active = open(sealed.isEmpty() ? 1 : sealed.get(sealed.size() - 1).id + 1);
+            }
+        } catch (IOException e) {
+            logger.at(Level.SEVERE).withCause(e).log("Failed to open the ledger");
+            throw new RuntimeException(e);
+        }
+
+        running = true;
+        writer = new Thread(this::drain, "Economy-Ledger");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public void shutdown() {
+        if (writer == null) {
+            return;
+        }
+
+        running = false;
+        LockSupport.unpark(writer);
+
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (this) {
+            active.data.force();
+        }
+    }
+
+    /**
+     * Queues a balance change to be written. Cheap enough to call while holding the account lock.
+     */
+    public void record(Type type, UUID account, UUID actor, UUID counterparty, long amount, long balance) {
+        if (enabled) {
+            queue.add(new Entry(System.currentTimeMillis(), type, account, actor, counterparty, amount, balance));
+        }
+    }
+
+    /**
+     * Counts the recorded changes of an account.
+     */
+    public synchronized int count(UUID uuid) {
+        if (!enabled) {
+            return 0;
+        }
+
+        var total = 0;
+        var head = active.lookup(uuid);
+
+        if (head != null) {
+            total += head[1];
+        }
+
+        for (var segment : sealed) {
+            head = segment.lookup(uuid);
+
+            if (head != null) {
+                total += head[1];
+            }
+        }
+
+        return total;
+    }
+
+    /**
+     * Gets an account's changes newest first, skipping the newest {@code offset}.
+     */
+    public synchronized List<Entry> history(UUID uuid, int offset, int limit) throws IOException {
+        var out = new ArrayList<Entry>();
+
+        if (!enabled) {
+            return out;
+        }
+
+        var skip = Math.max(0, offset);
+
+        for (var i = sealed.size(); i >= 0 && out.size() < limit; i--) {
+            var segment = i == sealed.size() ? active : sealed.get(i);
+            var head = segment.lookup(uuid);
+
+            if (head == null) {
+                continue;
+            }
+
+            if (skip >= head[1]) {
+                skip -= head[1];
+                continue;
+            }
+
+            var data = data(segment);
+            var record = head[0];
+
+            while (record >= 0 && out.size() < limit) {
+                var at = record * RECORD_SIZE;
+
+                if (skip > 0) {
+                    skip--;
+                } else {
+                    out.add(read(data, at));
+                }
+
+                record = data.getInt(at + PREV);
+            }
+        }
+
+        return out;
+    }
+
+    private void drain() {
+        var batch = new ArrayList<Entry>(BATCH_SIZE);
+
+        while (running || !queue.isEmpty()) {
+            Entry entry;
+
+            while (batch.size() < BATCH_SIZE && (entry = queue.poll()) != null) {
+                batch.add(entry);
+            }
+
+            if (batch.isEmpty()) {
+                LockSupport.parkNanos(DRAIN_INTERVAL_NANOS);
+                continue;
+            }
+
+            try {
+                synchronized (this) {
+                    for (var queued : batch) {
+                        append(queued);
+                    }
+                }
+            } catch (Exception e) {
+                logger.at(Level.SEVERE).withCause(e).log("Failed to write " + batch.size() + " ledger entries");
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void append(Entry entry) throws IOException {
+        // A segment recovered after segment_size_mb was lowered is mapped larger, so go by its own size.
+        if (active.count >= active.data.capacity() / RECORD_SIZE) {
+            seal(active);
+            active = open(active.id + 1);
+        }
+
+        var at = active.count * RECORD_SIZE;
+        var data = active.data;
+        var head = active.heads.get(entry.account());
+
+        data.putInt(at + PREV, head == null ? -1 : head[0]);
+        data.putLong(at + TIME, entry.time());
+        putUUID(data, at + ACCOUNT, entry.account());
+        putUUID(data, at + ACTOR, entry.actor());
+        putUUID(data, at + COUNTERPARTY, entry.counterparty());
+        data.putLong(at + AMOUNT, entry.amount());
+        data.putLong(at + BALANCE, entry.balance());
+        // Written last, so a record torn by a crash reads as the end of the segment.
+        data.put(at + TYPE, (byte) (entry.type().ordinal() + 1));
+
+        if (head == null) {
+            active.heads.put(entry.account(), new int[] {active.count, 1});
+        } else {
+            head[0] = active.count;
+            head[1]++;
+        }
+
+        active.count++;
+    }
+
+    private Segment open(long id) throws IOException {
+        var segment = new Segment(id, dir.resolve(String.format("%016d.seg", id)));
+        segment.data = map(segment.file, FileChannel.MapMode.READ_WRITE, (long) segmentRecords * RECORD_SIZE);
+        segment.heads = new HashMap<>();
+        return segment;
+    }
+
+    /**
+     * Maps an unsealed segment and rebuilds its in-memory index by scanning it.
+     */
+    private void recover(Segment segment) throws IOException {
+        segment.data = map(segment.file, FileChannel.MapMode.READ_WRITE, Math.max(Files.size(segment.file), (long) segmentRecords * RECORD_SIZE));
+        segment.heads = new HashMap<>();
+
+        var records = segment.data.capacity() / RECORD_SIZE;
+
+        while (segment.count < records && segment.data.get(segment.count * RECORD_SIZE + TYPE) != 0) {
+            var uuid = getUUID(segment.data, segment.count * RECORD_SIZE + ACCOUNT);
+            var head = segment.heads.computeIfAbsent(uuid, u -> new int[] {0, 0});
+            head[0] = segment.count;
+            head[1]++;
+            segment.count++;
+        }
+    }
+
+    /**
+     * Writes a segment's index file and switches it to reading from that file.
+     */
+    private void seal(Segment segment) throws IOException {
+        segment.data.force();
+
+        var uuids = new ArrayList<>(segment.heads.keySet());
+        uuids.sort(INDEX_ORDER);
+
+        var buffer = ByteBuffer.allocate(uuids.size() * INDEX_ENTRY_SIZE);
+
+        for (var uuid : uuids) {
+            var head = segment.heads.get(uuid);
+            buffer.putLong(uuid.getMostSignificantBits());
+            buffer.putLong(uuid.getLeastSignificantBits());
+            buffer.putInt(head[0]);
+            buffer.putInt(head[1]);
+        }
+
+        buffer.flip();
+
+        var tmp = dir.resolve(segment.file.getFileName() + ".idx.tmp");
+
+        try (var channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+
+            channel.force(true);
+        }
+
+        Files.move(tmp, indexFile(segment), StandardCopyOption.ATOMIC_MOVE);
+
+        segment.index = map(indexFile(segment), FileChannel.MapMode.READ_ONLY, Files.size(indexFile(segment)));
+        segment.heads = null;
+        sealed.add(segment);
+    }
+
+    private MappedByteBuffer data(Segment segment) throws IOException {
+        if (segment.data == null) {
+            segment.data = map(segment.file, FileChannel.MapMode.READ_ONLY, Files.size(segment.file));
+        }
+
+        return segment.data;
+    }
+
+    private Path indexFile(Segment segment) {
+        var name = segment.file.getFileName().toString();
+        return dir.resolve(name.substring(0, name.length() - 4) + ".idx");
+    }
+
+    private static MappedByteBuffer map(Path file, FileChannel.MapMode mode, long size) throws IOException {
+        var options = mode == FileChannel.MapMode.READ_ONLY
+            ? new StandardOpenOption[] {StandardOpenOption.READ}
+            : new StandardOpenOption[] {StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE};
+
+        try (var channel = FileChannel.open(file, options)) {
+            return channel.map(mode, 0, size);
+        }
+    }
+
+    private static Entry read(ByteBuffer data, int at) {
+        return new Entry(
+            data.getLong(at + TIME),
+            Type.values()[data.get(at + TYPE) - 1],
+            getUUID(data, at + ACCOUNT),
+            getUUID(data, at + ACTOR),
+            getUUID(data, at + COUNTERPARTY),
+            data.getLong(at + AMOUNT),
+            data.getLong(at + BALANCE)
+        );
+    }
+
+    private static void putUUID(ByteBuffer data, int at, UUID uuid) {
+        data.putLong(at, uuid == null ? 0 : uuid.getMostSignificantBits());
+        data.putLong(at + 8, uuid == null ? 0 : uuid.getLeastSignificantBits());
+    }
+
+    private static UUID getUUID(ByteBuffer data, int at) {
+        var msb = data.getLong(at);
+        var lsb = data.getLong(at + 8);
+        return msb == 0 && lsb == 0 ? null : new UUID(msb, lsb);
+    }
+}
@@ -0,0 +1,575 @@
+package me.clicker.economy.storage;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import me.clicker.economy.EconomyPlugin;
+import me.clicker.economy.Money;
+import me.clicker.economy.stats.Operation;
+import me.clicker.economy.stats.Stats;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Log-structured balance storage: the whole table lives in memory and is persisted as a snapshot plus an
+ * append-only log of saved rows. In memory, rows are kept sorted in {@link Storage#UUID_ORDER}, so
+ * {@link #getRowsAfter} seeks to its key instead of scanning.
+ *
+ * <p>{@link #saveAll} appends a single checksummed frame holding the whole batch, so on replay a batch is
+ * applied entirely or not at all and a frame torn by a crash is cut off. As with SQLite at
+ * {@code synchronous=NORMAL}, frames are handed to the OS without an fsync per batch. They survive a crash
+ * of the server process, and the log is fsynced on compaction and shutdown.</p>
+ *
+ * <p>Logs are numbered by generation. Once the current log grows past {@code storage.log_compact_mb}, a
+ * background thread starts the next generation, snapshots the table as of that switch, and deletes the
+ * older logs. Startup loads the snapshot and replays only the logs from its generation on.</p>
+ *
+ * <p>The snapshot records the {@code currency.fraction_digits} its balances, and every log after it, were
+ * written with. If the setting has changed, startup rescales the table and compacts right away, so the
+ * snapshot and logs never mix scales.</p>
+ */
+public class LogStorage implements Storage {
+    private static final int SNAPSHOT_MAGIC = 0x45434F53;
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final int HAS_NAME = 1;
+    private static final int OWNS_NAME = 2;
+
+    private final HytaleLogger logger;
+    private final Path dir;
+    private final long compactBytes;
+    private final ExecutorService compactor;
+    private final ConcurrentSkipListMap<UUID, Row> rows = new ConcurrentSkipListMap<>(UUID_ORDER);
+    private final Map<String, UUID> names = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    private final FrameBuffer frame = new FrameBuffer();
+    private final CRC32 crc = new CRC32();
+    private FileChannel log;
+    private long generation;
+    private int snapshotDigits = -1;
+    private long logBytes;
+    private boolean compacting;
+
+    /**
+     * A frame being built, readable in place by {@link #saveAll} instead of through a copy.
+     */
+    private static final class FrameBuffer extends ByteArrayOutputStream {
+        ByteBuffer contents() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+
+    public LogStorage(Path dir, long compactBytes) {
+        this(dir, compactBytes, EconomyPlugin.getInstance().getLogger());
+    }
+
+    public LogStorage(Path dir, long compactBytes, HytaleLogger logger) {
+        this.logger = logger;
+        this.dir = dir;
+        this.compactBytes = Math.max(1, compactBytes);
+        this.compactor = Executors.newSingleThreadExecutor(r -> {
+            var thread = new Thread(r, "Economy-Compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void init() {
+        try {
+            Files.createDirectories(dir);
+
+            var start = System.nanoTime();
+            generation = readSnapshot();
+
+            var logs = new ArrayList<Long>();
+
+            try (var stream = Files.newDirectoryStream(dir, "balances-*.log")) {
+                for (var file : stream) {
+                    var name = file.getFileName().toString();
+                    logs.add(Long.parseLong(name.substring("balances-".length(), name.length() - ".log".length())));
+                }
+            }
+
+            logs.sort(null);
+
+            for (var gen : logs) {
+                if (gen >= generation) {
+                    replay(logFile(gen));
+                    generation = gen;
+                }
+            }
+
+            log = FileChannel.open(logFile(generation), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            logBytes = log.size();
+
+            // Snapshots from before fraction digits were recorded are taken to match the current setting.
+            var digits = Money.fractionDigits();
+
+            if (snapshotDigits != digits) {
+                if (snapshotDigits >= 0) {
+                    rescale(snapshotDigits, digits);
+                }
+
+                compact();
+            }
+
+            logger.at(Level.INFO).log("Log storage ready: " + dir + " (" + rows.size() + " accounts in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms)");
+        } catch (Exception e) {
+            logger.at(Level.SEVERE).withCause(e).log("Log storage init failed");
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        compactor.shutdown();
+
+        try {
+            compactor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (writeLock) {
+            if (log == null) {
+                return;
+            }
+
+            try {
+                log.force(true);
+                log.close();
+            } catch (IOException e) {
+                logger.at(Level.SEVERE).withCause(e).log("Failed to close " + logFile(generation));
+            }
+
+            log = null;
+        }
+    }
+
+    @Override
+    public Row getRow(UUID uuid) {
+        return rows.get(uuid);
+    }
+
+    @Override
+    public Row getRow(String name) {
+        var key = Storage.normalizeName(name);
+        var uuid = names.get(key);
+
+        if (uuid == null) {
+            return null;
+        }
+
+        var row = rows.get(uuid);
+        return row != null && key.equals(Storage.normalizeName(row.name())) ? row : null;
+    }
+
+    @Override
+    public void saveAll(Collection<Row> batch) throws SQLException {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        var start = System.nanoTime();
+
+        try {
+            synchronized (writeLock) {
+                try {
+                    frame.reset();
+                    var out = new DataOutputStream(frame);
+                    out.writeInt(batch.size());
+
+                    for (var row : batch) {
+                        writeRow(out, row, row.name() != null ? HAS_NAME : 0);
+                    }
+
+                    var body = frame.contents();
+                    crc.reset();
+                    crc.update(body.duplicate());
+
+                    // Length, body and checksum go out in one gathering write, straight from the frame buffer.
+                    var buffers = new ByteBuffer[] {
+                        ByteBuffer.allocate(4).putInt(0, body.remaining()),
+                        body,
+                        ByteBuffer.allocate(4).putInt(0, (int) crc.getValue())
+                    };
+                    var size = 4 + body.remaining() + 4;
+
+                    while (buffers[2].hasRemaining()) {
+                        log.write(buffers);
+                    }
+
+                    logBytes += size;
+                } catch (IOException e) {
+                    throw new SQLException("Failed to append to " + logFile(generation), e);
+                }
+
+                for (var row : batch) {
+                    apply(row, row.name() != null);
+                }
+
+                if (logBytes >= compactBytes && !compacting) {
+                    compacting = true;
+                    compactor.execute(this::compactQuietly);
+                }
+            }
+        } finally {
+            Stats.record(Operation.SAVE_ALL, start);
+        }
+    }
+
+    @Override
+    public long totalBalance() {
+        var total = 0L;
+
+        for (var row : rows.values()) {
+            total += row.balance();
+        }
+
+        return total;
+    }
+
+    @Override
+    public int countRows() {
+        return rows.size();
+    }
+
+    @Override
+    public void forEachRow(Consumer<Row> consumer) {
+        rows.values().forEach(consumer);
+    }
+
+    @Override
+    public List<Row> getRowsAfter(UUID after, int limit) {
+        var out = new ArrayList<Row>(limit);
+
+        for (var row : (after == null ? rows : rows.tailMap(after, false)).values()) {
+            if (out.size() == limit) {
+                break;
+            }
+
+            out.add(row);
+        }
+
+        return out;
+    }
+
+    /**
+     * Appends the changed rows of the chunk as a single frame, like any other {@link #saveAll}.
+     */
+    @Override
+    public List<Row> adjustAfter(UUID after, int limit, Adjustment adjustment, long amount) throws SQLException {
+        synchronized (writeLock) {
+            var rows = getRowsAfter(after, limit);
+            var changed = new ArrayList<Row>(rows.size());
+
+            for (var row : rows) {
+                if (adjustment.appliesTo(row.balance(), amount)) {
+                    changed.add(new Row(row.uuid(), null, adjustment.apply(row.balance(), amount)));
+                }
+            }
+
+            saveAll(changed);
+            return rows;
+        }
+    }
+
+    /**
+     * Applies a saved row to the table. A null name keeps the stored one.
+     */
+    private void apply(Row row, boolean ownsName) {
+        var name = row.name();
+
+        if (name == null) {
+            var existing = rows.get(row.uuid());
+            name = existing != null ? existing.name() : null;
+        }
+
+        rows.put(row.uuid(), new Row(row.uuid(), name, row.balance()));
+
+        if (ownsName && name != null) {
+            names.put(Storage.normalizeName(name), row.uuid());
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (Exception e) {
+            logger.at(Level.SEVERE).withCause(e).log("Failed to compact " + dir);
+        } finally {
+            synchronized (writeLock) {
+                compacting = false;
+            }
+        }
+    }
+
+    /**
+     * Switches to a new log generation, snapshots the table as of the switch, then drops the older logs.
+     */
+    private void compact() throws IOException {
+        long snapshotGeneration;
+        List<Row> copy;
+        var owners = new ArrayList<Boolean>();
+
+        synchronized (writeLock) {
+            if (log == null) {
+                return;
+            }
+
+            log.force(true);
+            log.close();
+
+            snapshotGeneration = generation + 1;
+            log = FileChannel.open(logFile(snapshotGeneration), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            generation = snapshotGeneration;
+            logBytes = 0;
+
+            copy = new ArrayList<>(rows.values());
+
+            for (var row : copy) {
+                owners.add(row.name() != null && row.uuid().equals(names.get(Storage.normalizeName(row.name()))));
+            }
+        }
+
+        var tmp = dir.resolve("balances.snapshot.tmp");
+
+        try (var file = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            var checked = new CheckedOutputStream(new BufferedOutputStream(Channels.newOutputStream(file), 1 << 16), new CRC32());
+            var out = new DataOutputStream(checked);
+
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(snapshotGeneration);
+            out.writeInt(Money.fractionDigits());
+            out.writeInt(copy.size());
+
+            for (var i = 0; i < copy.size(); i++) {
+                var row = copy.get(i);
+                writeRow(out, row, (row.name() != null ? HAS_NAME : 0) | (owners.get(i) ? OWNS_NAME : 0));
+            }
+
+            out.writeInt((int) checked.getChecksum().getValue());
+            out.flush();
+            file.force(true);
+        }
+
+        Files.move(tmp, dir.resolve("balances.snapshot"), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        try (var stream = Files.newDirectoryStream(dir, "balances-*.log")) {
+            for (var file : stream) {
+                var name = file.getFileName().toString();
+
+                if (Long.parseLong(name.substring("balances-".length(), name.length() - ".log".length())) < snapshotGeneration) {
+                    Files.delete(file);
+                }
+            }
+        }
+
+        logger.at(Level.INFO).log("Compacted " + dir.getFileName() + " to " + copy.size() + " accounts at generation " + snapshotGeneration);
+    }
+
+    /**
+     * Loads the snapshot, if any, and returns the first log generation written after it.
+     */
+    private long readSnapshot() throws IOException {
+        var file = dir.resolve("balances.snapshot");
+
+        if (!Files.exists(file)) {
+            return 0;
+        }
+
+        var checked = new CheckedInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16), new CRC32());
+
+        try (var in = new DataInputStream(checked)) {
+            var magic = in.readInt();
+            var version = in.readInt();
+
+            if (magic != SNAPSHOT_MAGIC || version < 1 || version > SNAPSHOT_VERSION) {
+                throw new IOException("Unrecognized snapshot " + file);
+            }
+
+            var snapshotGeneration = in.readLong();
+            snapshotDigits = version >= 2 ? in.readInt() : -1;
+            var count = in.readInt();
+
+            for (var i = 0; i < count; i++) {
+                var flags = in.readUnsignedByte();
+                apply(readRow(in, flags), (flags & OWNS_NAME) != 0);
+            }
+
+            var expected = (int) checked.getChecksum().getValue();
+
+            if (in.readInt() != expected) {
+                throw new IOException("Corrupt snapshot " + file);
+            }
+
+            return snapshotGeneration;
+        }
+    }
+
+    /**
+     * Converts every balance from {@code from} to {@code to} fraction digits, rounding half away from zero
+     * as {@link SQLiteStorage} does.
+     */
+    private void rescale(int from, int to) throws IOException {
+        var factor = 1L;
+
+        for (var i = Math.min(from, to); i < Math.max(from, to); i++) {
+            factor *= 10;
+        }
+
+        for (var row : rows.values()) {
+            long balance;
+
+            if (to > from) {
+                try {
+                    balance = Math.multiplyExact(row.balance(), factor);
+                } catch (ArithmeticException e) {
+                    throw new IOException("Balance of " + row.uuid() + " does not fit at " + to + " fraction digits", e);
+                }
+            } else {
+                balance = row.balance() >= 0 ? (row.balance() + factor / 2) / factor : (row.balance() - factor / 2) / factor;
+            }
+
+            rows.put(row.uuid(), new Row(row.uuid(), row.name(), balance));
+        }
+
+        logger.at(Level.INFO).log("Rescaled balances in " + dir.getFileName() + " from " + from + " to " + to + " fraction digits");
+    }
+
+    /**
+     * Applies every complete frame of a log and cuts off a torn frame at its end.
+     *
+     * <p>A torn tail can hold anything, zeros included, so its length is checked against the rest of the
+     * file before anything is allocated, and a frame is only applied once all of its rows have been read.</p>
+     */
+    private void replay(Path file) throws IOException {
+        var size = Files.size(file);
+        var valid = 0L;
+
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            while (true) {
+                int length;
+
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                // A frame holds at least its row count and is followed by its checksum.
+                if (length < 4 || length > size - valid - 8) {
+                    break;
+                }
+
+                var body = new byte[length];
+                int checksum;
+
+                try {
+                    in.readFully(body);
+                    checksum = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                crc.reset();
+                crc.update(body, 0, length);
+
+                if (checksum != (int) crc.getValue()) {
+                    break;
+                }
+
+                var frameIn = new DataInputStream(new ByteArrayInputStream(body));
+                var batch = new ArrayList<Row>();
+                var owners = new ArrayList<Boolean>();
+
+                try {
+                    var count = frameIn.readInt();
+
+                    for (var i = 0; i < count; i++) {
+                        var flags = frameIn.readUnsignedByte();
+                        batch.add(readRow(frameIn, flags));
+                        owners.add((flags & HAS_NAME) != 0);
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+
+                for (var i = 0; i < batch.size(); i++) {
+                    apply(batch.get(i), owners.get(i));
+                }
+
+                valid += 4 + length + 4;
+            }
+        }
+
+        if (valid < Files.size(file)) {
+            logger.at(Level.WARNING).log("Discarding " + (Files.size(file) - valid) + " bytes of incomplete log at the end of " + file.getFileName());
+
+            try (var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            }
+        }
+    }
+
+    private Path logFile(long gen) {
+        return dir.resolve(String.format("balances-%016d.log", gen));
+    }
+
+    private static void writeRow(DataOutputStream out, Row row, int flags) throws IOException {
+        out.writeByte(flags);
+        out.writeLong(row.uuid().getMostSignificantBits());
+        out.writeLong(row.uuid().getLeastSignificantBits());
+        out.writeLong(row.balance());
+
+        if ((flags & HAS_NAME) != 0) {
+            var bytes = row.name().getBytes(StandardCharsets.UTF_8);
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static Row readRow(DataInputStream in, int flags) throws IOException {
+        var uuid = new UUID(in.readLong(), in.readLong());
+        var balance = in.readLong();
+        String name = null;
+
+        if ((flags & HAS_NAME) != 0) {
+            var bytes = new byte[in.readUnsignedShort()];
+            in.readFully(bytes);
+            name = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        return new Row(uuid, name, balance);
+    }
+}
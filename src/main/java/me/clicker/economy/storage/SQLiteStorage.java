@@ -1,281 +1,1001 @@
-package me.clicker.economy.storage;
-
-import com.hypixel.hytale.logger.HytaleLogger;
-import me.clicker.economy.EconomyPlugin;
-import me.clicker.economy.exceptions.NoRowsAffectedException;
-
-import java.nio.file.Path;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.UUID;
-import java.util.logging.Level;
-
-public class SQLiteStorage {
-    private final HytaleLogger logger;
-    private final Path dbFile;
-    private Connection connection;
-
-    public record Row(UUID uuid, String name, double balance) {}
-    public record TakeResult(boolean success, double balance, Reason reason) {
-        public enum Reason {
-            SUCCESS,
-            NOT_ENOUGH,
-            NOT_FOUND
-        }
-    }
-
-    public SQLiteStorage(Path dbFile) {
-        this.logger = EconomyPlugin.getInstance().getLogger();
-        this.dbFile = dbFile;
-    }
-
-    public void init() {
-        try {
-            Class.forName("org.sqlite.JDBC");
-            connection = DriverManager.getConnection("jdbc:sqlite:" + dbFile.toAbsolutePath());
-            connection.setAutoCommit(true);
-            createTablesIfNotExists();
-            logger.at(Level.INFO).log("SQLite ready: " + dbFile);
-        } catch (Exception e) {
-            logger.at(Level.SEVERE).withCause(e).log("SQLite init failed");
-            throw new RuntimeException(e);
-        }
-    }
-
-    public void shutdown() {
-        if (connection != null) {
-            try {
-                connection.close();
-            } catch (SQLException ignored) {}
-
-            connection = null;
-        }
-    }
-
-    private void createTablesIfNotExists() throws SQLException {
-        try (var st = connection.createStatement()) {
-            st.executeUpdate("""
-                CREATE TABLE IF NOT EXISTS balances (
-                    uuid TEXT PRIMARY KEY NOT NULL,
-                    name TEXT,
-                    balance REAL NOT NULL DEFAULT 0.0,
-                    last_updated INTEGER NOT NULL
-                );
-            """);
-
-            st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_balances_balance ON balances(balance DESC);");
-        }
-    }
-
-    public Row getRow(UUID uuid) throws SQLException {
-        try (var ps = connection.prepareStatement("SELECT uuid, name, balance FROM balances WHERE uuid=?")) {
-            ps.setString(1, uuid.toString());
-
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return new Row(UUID.fromString(rs.getString(1)), rs.getString(2), rs.getDouble(3));
-                }
-            }
-        }
-
-        return null;
-    }
-
-    public Row getRow(String name) throws SQLException {
-        try (var ps = connection.prepareStatement("SELECT uuid, name, balance FROM balances WHERE LOWER(name)=LOWER(?)")) {
-            ps.setString(1, name);
-
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return new Row(UUID.fromString(rs.getString(1)), rs.getString(2), rs.getDouble(3));
-                }
-            }
-        }
-
-        return null;
-    }
-
-    public boolean setBalance(UUID uuid, String name, double amount) throws SQLException {
-        try (var ps = connection.prepareStatement("INSERT INTO balances (uuid, name, balance, last_updated) VALUES (?, ?, ?, ?) ON CONFLICT(uuid) DO UPDATE SET name = COALESCE(excluded.name, balances.name), balance = excluded.balance, last_updated = excluded.last_updated")) {
-            ps.setString(1, uuid.toString());
-            ps.setString(2, name);
-            ps.setDouble(3, amount);
-            ps.setLong(4, System.currentTimeMillis());
-            return ps.executeUpdate() > 0;
-        }
-    }
-
-    public double give(UUID uuid, String name, double amount) throws SQLException, NoRowsAffectedException {
-        try (var ps = connection.prepareStatement("INSERT INTO balances (uuid, name, balance, last_updated) VALUES (?, ?, ?, ?) ON CONFLICT(uuid) DO UPDATE SET name = COALESCE(excluded.name, balances.name), balance = balances.balance + excluded.balance, last_updated = excluded.last_updated RETURNING balance")) {
-            ps.setString(1, uuid.toString());
-            ps.setString(2, name);
-            ps.setDouble(3, amount);
-            ps.setLong(4, System.currentTimeMillis());
-
-            try (var rs = ps.executeQuery()) {
-                if (!rs.next()) {
-                    throw new NoRowsAffectedException();
-                }
-
-                return rs.getDouble(1);
-            }
-        }
-    }
-
-    public TakeResult takeIfEnough(UUID uuid, String name, double amount) throws SQLException {
-        var auto = connection.getAutoCommit();
-        connection.setAutoCommit(false);
-
-        try {
-            Double balance = null;
-
-            try (var ps = connection.prepareStatement("UPDATE balances SET name = COALESCE(?, name), balance = balance - ?, last_updated = ? WHERE uuid = ? AND balance >= ? RETURNING balance")) {
-                ps.setString(1, name);
-                ps.setDouble(2, amount);
-                ps.setLong(3, System.currentTimeMillis());
-                ps.setString(4, uuid.toString());
-                ps.setDouble(5, amount);
-
-                try (var rs = ps.executeQuery()) {
-                    if (rs.next()) {
-                        balance = rs.getDouble(1);
-                    }
-                }
-            }
-
-            TakeResult result;
-
-            if (balance != null) {
-                result = new TakeResult(true, balance, TakeResult.Reason.SUCCESS);
-            } else {
-                try (var ps = connection.prepareStatement("SELECT balance FROM balances WHERE uuid=?")) {
-                    ps.setString(1, uuid.toString());
-
-                    try (var rs = ps.executeQuery()) {
-                        if (rs.next()) {
-                            balance = rs.getDouble(1);
-                        }
-                    }
-                }
-
-                if (balance != null) {
-                    result = new TakeResult(false, balance, TakeResult.Reason.NOT_ENOUGH);
-                } else {
-                    result = new TakeResult(false, 0.0, TakeResult.Reason.NOT_FOUND);
-                }
-            }
-
-            connection.commit();
-            return result;
-        } catch (SQLException e) {
-            try {
-                connection.rollback();
-            } catch (SQLException ignore) {}
-
-            throw e;
-        } finally {
-            try {
-                connection.setAutoCommit(auto);
-            } catch (SQLException ignore) {}
-        }
-    }
-
-    public boolean transfer(UUID fromUUID, String fromName, UUID toUUID, String toName, double amount) throws SQLException {
-        try {
-            connection.setAutoCommit(false);
-
-            var now = System.currentTimeMillis();
-
-            try (var ps = connection.prepareStatement("UPDATE balances SET balance = balance - ?, name = COALESCE(?, name), last_updated = ? WHERE uuid=? AND balance >= ?")) {
-                ps.setDouble(1, amount);
-                ps.setString(2, fromName);
-                ps.setLong(3, now);
-                ps.setString(4, fromUUID.toString());
-                ps.setDouble(5, amount);
-
-                if (ps.executeUpdate() == 0) {
-                    connection.rollback();
-                    return false;
-                }
-            }
-
-            try (var ps = connection.prepareStatement("INSERT INTO balances (uuid, name, balance, last_updated) VALUES (?, ?, ?, ?) ON CONFLICT(uuid) DO UPDATE SET balance = balance + excluded.balance, name = COALESCE(excluded.name, balances.name), last_updated=excluded.last_updated")) {
-                ps.setString(1, toUUID.toString());
-                ps.setString(2, toName);
-                ps.setDouble(3, amount);
-                ps.setLong(4, now);
-                ps.executeUpdate();
-            }
-
-            connection.commit();
-            return true;
-        } catch (SQLException e) {
-            try {
-                connection.rollback();
-            } catch (Exception ignored) { }
-
-            throw e;
-        } finally {
-            try {
-                connection.setAutoCommit(true);
-            } catch (Exception ignored) { }
-        }
-    }
-
-    public void insertOrUpdateName(UUID uuid, String name, double startingBalance) throws SQLException {
-        try (var ps = connection.prepareStatement("INSERT INTO balances (uuid, name, balance, last_updated) VALUES (?, ?, ?, ?) ON CONFLICT(uuid) DO UPDATE SET name=excluded.name, last_updated=excluded.last_updated")) {
-            ps.setString(1, uuid.toString());
-            ps.setString(2, name);
-            ps.setDouble(3, startingBalance);
-            ps.setLong(4, System.currentTimeMillis());
-            ps.executeUpdate();
-        }
-    }
-
-    public boolean exists(String name) throws SQLException {
-        try (var ps = connection.prepareStatement("SELECT 1 FROM balances WHERE LOWER(name)=LOWER(?) LIMIT 1")) {
-            ps.setString(1, name);
-
-            try (var rs = ps.executeQuery()) {
-                return rs.next();
-            }
-        }
-    }
-
-    public List<Row> getTop(int limit, int offset) throws SQLException {
-        ArrayList<Row> out = new ArrayList<>();
-
-        try (var ps = connection.prepareStatement("SELECT uuid, COALESCE(name,''), balance FROM balances ORDER BY balance DESC LIMIT ? OFFSET ?")) {
-            ps.setInt(1, limit);
-            ps.setInt(2, offset);
-
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    out.add(new Row(UUID.fromString(rs.getString(1)), rs.getString(2), rs.getDouble(3)));
-                }
-            }
-        }
-
-        return out;
-    }
-
-    public double totalBalance() throws SQLException {
-        try (var ps = connection.prepareStatement("SELECT COALESCE(SUM(balance), 0.0) FROM balances")) {
-            try (var rs = ps.executeQuery()) {
-                return rs.next() ? rs.getDouble(1) : 0.0;
-            }
-        }
-    }
-
-    public int countRows() throws SQLException {
-        try (var ps = connection.prepareStatement("SELECT COUNT(*) FROM balances")) {
-            try (var rs = ps.executeQuery()) {
-                return rs.next() ? rs.getInt(1) : 0;
-            }
-        }
-    }
-}
+package me.clicker.economy.storage;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import jdk.jfr.EventType;
+import me.clicker.economy.EconomyPlugin;
+import me.clicker.economy.Money;
+import me.clicker.economy.config.Config;
+import me.clicker.economy.stats.Operation;
+import me.clicker.economy.stats.Stats;
+
+import java.nio.file.Path;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * SQLite backed balance storage.
+ *
+ * <p>The database runs in WAL mode. The read-write connection is owned by a single writer thread;
+ * every mutation hands its work to that thread and waits for the result, so transactions from different
+ * callers can never interleave. Lookups and leaderboard queries borrow one of a small pool of read-only
+ * connections instead, so they neither wait behind payments nor hold them up.</p>
+ *
+ * <p>Balances are stored as integer minor units (see {@link Money}). The number of fraction digits they
+ * were written with is recorded in the {@code meta} table, and balances are rescaled on startup if
+ * {@code currency.fraction_digits} has since changed.</p>
+ *
+ * <p>Accounts are keyed by their UUID as a 16-byte big-endian {@code BLOB} in a {@code WITHOUT ROWID}
+ * table, so the key is stored once, in the primary key B-tree itself.</p>
+ */
+public class SQLiteStorage implements Storage {
+    private static final int SCHEMA_VERSION = 4;
+
+    private static final String SELECT_BY_UUID = "SELECT uuid, name, balance FROM balances WHERE uuid=?";
+    private static final String SELECT_BY_NAME = "SELECT uuid, name, balance FROM balances WHERE name_lower=?";
+    private static final String SET_BALANCE = "INSERT INTO balances (uuid, name, balance, last_updated, name_lower) VALUES (?, ?, ?, ?, ?) ON CONFLICT(uuid) DO UPDATE SET name = COALESCE(excluded.name, balances.name), name_lower = COALESCE(excluded.name_lower, balances.name_lower), balance = excluded.balance, last_updated = excluded.last_updated";
+    private static final String RELEASE_NAME = "UPDATE balances SET name_lower = NULL WHERE name_lower = ? AND uuid <> ?";
+    private static final String EXISTS_BY_NAME = "SELECT 1 FROM balances WHERE name_lower=? LIMIT 1";
+    private static final String SELECT_TOP = "SELECT uuid, COALESCE(name,''), balance FROM balances ORDER BY balance DESC LIMIT ? OFFSET ?";
+    private static final String TOTAL_BALANCE = "SELECT COALESCE(SUM(balance), 0) FROM balances";
+    private static final String COUNT_ROWS = "SELECT COUNT(*) FROM balances";
+    private static final String SELECT_ALL = "SELECT uuid, name, balance FROM balances";
+    private static final String SELECT_FIRST = "SELECT uuid, name, balance FROM balances ORDER BY uuid LIMIT ?";
+    private static final String SELECT_AFTER = "SELECT uuid, name, balance FROM balances WHERE uuid > ? ORDER BY uuid LIMIT ?";
+    private static final String ADJUST_GIVE = "UPDATE balances SET balance = balance + ?, last_updated = ? WHERE uuid >= ? AND uuid <= ? AND balance <= ?";
+    private static final String ADJUST_TAKE = "UPDATE balances SET balance = balance - ?, last_updated = ? WHERE uuid >= ? AND uuid <= ? AND balance >= ?";
+    private static final String ADJUST_SET = "UPDATE balances SET balance = ?, last_updated = ? WHERE uuid >= ? AND uuid <= ?";
+    private static final String SELECT_META = "SELECT value FROM meta WHERE key=?";
+    private static final String SET_META = "INSERT INTO meta (key, value) VALUES (?, ?) ON CONFLICT(key) DO UPDATE SET value=excluded.value";
+    private static final String DELETE_META = "DELETE FROM meta WHERE key=?";
+    private static final String SELECT_IDLE = "SELECT uuid FROM balances WHERE uuid >= ? AND uuid <= ? AND last_updated < ?";
+    private static final String UPDATE_BALANCE = "UPDATE balances SET balance=? WHERE uuid=?";
+    private static final int MIGRATION_CHUNK_ROWS = 10_000;
+    private static final EventType STORAGE_EVENT = EventType.getEventType(StorageEvent.class);
+
+    private final HytaleLogger logger;
+    private final Path dbFile;
+    private final ExecutorService executor;
+    private volatile Thread writerThread;
+    private StatementCache writer;
+    private BlockingQueue<StatementCache> readers;
+
+    @FunctionalInterface
+    private interface SqlTask<T> {
+        T run() throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface WriteTask<T> {
+        T run(StorageEvent event) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface ReadTask<T> {
+        T run(StatementCache db, StorageEvent event) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface Migration {
+        void run(Statement st) throws SQLException;
+    }
+
+    public SQLiteStorage(Path dbFile) {
+        this(dbFile, EconomyPlugin.getInstance().getLogger());
+    }
+
+    public SQLiteStorage(Path dbFile, HytaleLogger logger) {
+        this.logger = logger;
+        this.dbFile = dbFile;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            var thread = new Thread(r, "Economy-Storage");
+            thread.setDaemon(true);
+            writerThread = thread;
+            return thread;
+        });
+    }
+
+    @Override
+    public void init() {
+        try {
+            call(() -> {
+                try {
+                    Class.forName("org.sqlite.JDBC");
+                } catch (ClassNotFoundException e) {
+                    throw new SQLException("SQLite JDBC driver not found", e);
+                }
+
+                var connection = DriverManager.getConnection(url());
+                connection.setAutoCommit(true);
+                writer = new StatementCache(connection);
+
+                try (var st = connection.createStatement()) {
+                    st.execute("PRAGMA journal_mode=WAL");
+                    st.execute("PRAGMA synchronous=NORMAL");
+                    st.execute("PRAGMA busy_timeout=5000");
+                }
+
+                migrate();
+                rescale();
+                return null;
+            });
+
+            var readConnections = Math.max(1, Config.storage_read_connections);
+            readers = new ArrayBlockingQueue<>(readConnections);
+
+            for (var i = 0; i < readConnections; i++) {
+                readers.add(openReader());
+            }
+
+            logger.at(Level.INFO).log("SQLite ready: " + dbFile);
+        } catch (Exception e) {
+            logger.at(Level.SEVERE).withCause(e).log("SQLite init failed");
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        if (readers != null) {
+            StatementCache reader;
+
+            while ((reader = readers.poll()) != null) {
+                reader.close();
+            }
+        }
+
+        try {
+            call(() -> {
+                if (writer != null) {
+                    writer.close();
+                    writer = null;
+                }
+
+                return null;
+            });
+        } catch (SQLException ignored) {}
+
+        executor.shutdown();
+
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String url() {
+        return "jdbc:sqlite:" + dbFile.toAbsolutePath();
+    }
+
+    private StatementCache openReader() throws SQLException {
+        var props = new Properties();
+        props.setProperty("open_mode", "1");
+
+        var connection = DriverManager.getConnection(url(), props);
+
+        try (var st = connection.createStatement()) {
+            st.execute("PRAGMA busy_timeout=5000");
+        }
+
+        return new StatementCache(connection);
+    }
+
+    /**
+     * Runs a read-only task on a pooled reader connection on the calling thread, recording it under
+     * {@code operation}.
+     */
+    private <T> T read(Operation operation, ReadTask<T> task) throws SQLException {
+        var event = begin();
+        var start = System.nanoTime();
+        StatementCache reader;
+
+        try {
+            reader = readers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            record(operation, start, event);
+            throw new SQLException("Interrupted while waiting for a read connection", e);
+        }
+
+        try {
+            return task.run(reader, event);
+        } finally {
+            readers.add(reader);
+            record(operation, start, event);
+        }
+    }
+
+    /**
+     * Runs a task on the writer thread and waits for its result, recording it under {@code operation}.
+     */
+    private <T> T call(Operation operation, WriteTask<T> task) throws SQLException {
+        var event = begin();
+        var start = System.nanoTime();
+
+        try {
+            return call(() -> task.run(event));
+        } finally {
+            record(operation, start, event);
+        }
+    }
+
+    /**
+     * Starts a {@link StorageEvent}, or returns null while no recording enables it so that unrecorded
+     * operations allocate none. Tasks fill it in through {@link #setRows}, {@link #addRows} and
+     * {@link #setRolledBack}, which skip a null event.
+     */
+    private static StorageEvent begin() {
+        if (!STORAGE_EVENT.isEnabled()) {
+            return null;
+        }
+
+        var event = new StorageEvent();
+        event.begin();
+        return event;
+    }
+
+    private static void record(Operation operation, long start, StorageEvent event) {
+        Stats.record(operation, start);
+
+        if (event == null) {
+            return;
+        }
+
+        event.end();
+
+        if (event.shouldCommit()) {
+            event.operation = operation.label();
+            event.commit();
+        }
+    }
+
+    private static void setRows(StorageEvent event, int rows) {
+        if (event != null) {
+            event.rows = rows;
+        }
+    }
+
+    private static void addRows(StorageEvent event, int rows) {
+        if (event != null) {
+            event.rows += rows;
+        }
+    }
+
+    private static void setRolledBack(StorageEvent event) {
+        if (event != null) {
+            event.rolledBack = true;
+        }
+    }
+
+    /**
+     * Runs a task on the writer thread and waits for its result.
+     *
+     * <p>Tasks submitted from the writer thread itself run inline.</p>
+     */
+    private <T> T call(SqlTask<T> task) throws SQLException {
+        if (Thread.currentThread() == writerThread) {
+            return task.run();
+        }
+
+        try {
+            return executor.submit(task::run).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for storage", e);
+        } catch (ExecutionException e) {
+            var cause = e.getCause();
+
+            if (cause instanceof SQLException sql) {
+                throw sql;
+            }
+
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+
+            throw new SQLException(cause);
+        }
+    }
+
+    static byte[] toBytes(UUID uuid) {
+        var bytes = new byte[16];
+        var msb = uuid.getMostSignificantBits();
+        var lsb = uuid.getLeastSignificantBits();
+
+        for (var i = 7; i >= 0; i--) {
+            bytes[i] = (byte) msb;
+            bytes[i + 8] = (byte) lsb;
+            msb >>>= 8;
+            lsb >>>= 8;
+        }
+
+        return bytes;
+    }
+
+    static UUID toUUID(byte[] bytes) {
+        var msb = 0L;
+        var lsb = 0L;
+
+        for (var i = 0; i < 8; i++) {
+            msb = msb << 8 | bytes[i] & 0xFF;
+            lsb = lsb << 8 | bytes[i + 8] & 0xFF;
+        }
+
+        return new UUID(msb, lsb);
+    }
+
+    /**
+     * Brings the schema up to {@link #SCHEMA_VERSION}, tracked in {@code PRAGMA user_version}.
+     *
+     * <p>Each step runs in its own transaction together with the version bump, so an interrupted
+     * upgrade resumes from the last completed step.</p>
+     */
+    private void migrate() throws SQLException {
+        int version;
+
+        try (var st = writer.connection().createStatement(); var rs = st.executeQuery("PRAGMA user_version")) {
+            version = rs.next() ? rs.getInt(1) : 0;
+        }
+
+        if (version < 1) {
+            migrate(1, this::createTables);
+        }
+
+        if (version < 2) {
+            migrate(2, this::addNameIndex);
+        }
+
+        if (version < 3) {
+            migrate(3, this::convertToMinorUnits);
+        }
+
+        if (version < 4) {
+            copyToBlobKeys();
+            migrate(4, this::swapToBlobKeys);
+
+            try (var st = writer.connection().createStatement()) {
+                st.execute("VACUUM");
+            }
+        }
+    }
+
+    private void migrate(int version, Migration migration) throws SQLException {
+        transaction(st -> {
+            migration.run(st);
+            st.execute("PRAGMA user_version=" + version);
+        });
+
+        if (version > 1) {
+            logger.at(Level.INFO).log("Migrated " + dbFile.getFileName() + " to schema version " + version + "/" + SCHEMA_VERSION);
+        }
+    }
+
+    private void transaction(Migration work) throws SQLException {
+        var connection = writer.connection();
+        connection.setAutoCommit(false);
+
+        try (var st = connection.createStatement()) {
+            work.run(st);
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            try {
+                connection.rollback();
+            } catch (SQLException ignore) {}
+
+            throw e;
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException ignore) {}
+        }
+    }
+
+    private void createTables(Statement st) throws SQLException {
+        st.executeUpdate("""
+            CREATE TABLE IF NOT EXISTS balances (
+                uuid TEXT PRIMARY KEY NOT NULL,
+                name TEXT,
+                balance REAL NOT NULL DEFAULT 0.0,
+                last_updated INTEGER NOT NULL
+            );
+        """);
+
+        st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_balances_balance ON balances(balance DESC);");
+    }
+
+    /**
+     * Adds the normalized {@code name_lower} column behind a unique index, so name lookups no longer scan
+     * the table. When several rows share a name, only the most recently updated one keeps it.
+     */
+    private void addNameIndex(Statement st) throws SQLException {
+        st.executeUpdate("ALTER TABLE balances ADD COLUMN name_lower TEXT;");
+
+        var connection = st.getConnection();
+        var seen = new HashSet<String>();
+
+        try (var select = connection.createStatement();
+             var rs = select.executeQuery("SELECT uuid, name FROM balances WHERE name IS NOT NULL ORDER BY last_updated DESC");
+             var update = connection.prepareStatement("UPDATE balances SET name_lower = ? WHERE uuid = ?")) {
+            while (rs.next()) {
+                var key = Storage.normalizeName(rs.getString(2));
+
+                if (seen.add(key)) {
+                    update.setString(1, key);
+                    update.setString(2, rs.getString(1));
+                    update.addBatch();
+                }
+            }
+
+            update.executeBatch();
+        }
+
+        st.executeUpdate("CREATE UNIQUE INDEX IF NOT EXISTS idx_balances_name_lower ON balances(name_lower);");
+    }
+
+    /**
+     * Rebuilds {@code balances} with an {@code INTEGER} balance column holding minor units, rounding each
+     * {@code REAL} balance to the configured fraction digits. The rebuild is needed because a column with
+     * {@code REAL} affinity would convert stored integers back to floating point.
+     */
+    private void convertToMinorUnits(Statement st) throws SQLException {
+        var digits = Money.fractionDigits();
+
+        st.executeUpdate("""
+            CREATE TABLE balances_minor (
+                uuid TEXT PRIMARY KEY NOT NULL,
+                name TEXT,
+                balance INTEGER NOT NULL DEFAULT 0,
+                last_updated INTEGER NOT NULL,
+                name_lower TEXT
+            );
+        """);
+
+        st.executeUpdate("INSERT INTO balances_minor (uuid, name, balance, last_updated, name_lower) SELECT uuid, name, CAST(ROUND(balance * " + Money.scale() + ") AS INTEGER), last_updated, name_lower FROM balances;");
+        st.executeUpdate("DROP TABLE balances;");
+        st.executeUpdate("ALTER TABLE balances_minor RENAME TO balances;");
+        st.executeUpdate("CREATE INDEX idx_balances_balance ON balances(balance DESC);");
+        st.executeUpdate("CREATE UNIQUE INDEX idx_balances_name_lower ON balances(name_lower);");
+
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS meta (key TEXT PRIMARY KEY NOT NULL, value TEXT);");
+        st.executeUpdate("INSERT INTO meta (key, value) VALUES ('fraction_digits', '" + digits + "');");
+    }
+
+    /**
+     * Copies {@code balances} into {@code balances_blob}, converting each text UUID to 16 bytes.
+     *
+     * <p>Rows are copied in {@code rowid} order, {@link #MIGRATION_CHUNK_ROWS} per transaction, and the last
+     * copied {@code rowid} is saved in {@code meta} with each chunk. An interrupted copy resumes after it on
+     * the next startup instead of starting over.</p>
+     */
+    private void copyToBlobKeys() throws SQLException {
+        var connection = writer.connection();
+
+        try (var st = connection.createStatement()) {
+            st.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS balances_blob (
+                    uuid BLOB PRIMARY KEY NOT NULL,
+                    name TEXT,
+                    balance INTEGER NOT NULL DEFAULT 0,
+                    last_updated INTEGER NOT NULL,
+                    name_lower TEXT
+                ) WITHOUT ROWID;
+            """);
+        }
+
+        var lastRowId = 0L;
+
+        // Statements here are closed rather than cached, since open statements would block the VACUUM that follows.
+        try (var select = connection.prepareStatement(SELECT_META)) {
+            select.setString(1, "blob_migration_rowid");
+
+            try (var rs = select.executeQuery()) {
+                if (rs.next()) {
+                    lastRowId = Long.parseLong(rs.getString(1));
+                    logger.at(Level.INFO).log("Resuming UUID key migration of " + dbFile.getFileName() + " after row " + lastRowId);
+                }
+            }
+        }
+
+        var copied = 0L;
+
+        try (var read = connection.prepareStatement("SELECT rowid, uuid, name, balance, last_updated, name_lower FROM balances WHERE rowid > ? ORDER BY rowid LIMIT " + MIGRATION_CHUNK_ROWS);
+             var insert = connection.prepareStatement("INSERT OR IGNORE INTO balances_blob (uuid, name, balance, last_updated, name_lower) VALUES (?, ?, ?, ?, ?)");
+             var progress = connection.prepareStatement(SET_META)) {
+            while (true) {
+                var from = lastRowId;
+                var rows = new int[1];
+                var last = new long[] {from};
+
+                transaction(st -> {
+                    insert.clearBatch();
+                    read.setLong(1, from);
+
+                    try (var rs = read.executeQuery()) {
+                        while (rs.next()) {
+                            last[0] = rs.getLong(1);
+                            insert.setBytes(1, toBytes(legacyUUID(last[0], rs.getString(2))));
+                            insert.setString(2, rs.getString(3));
+                            insert.setLong(3, rs.getLong(4));
+                            insert.setLong(4, rs.getLong(5));
+                            insert.setString(5, rs.getString(6));
+                            insert.addBatch();
+                            rows[0]++;
+                        }
+                    }
+
+                    insert.executeBatch();
+
+                    progress.setString(1, "blob_migration_rowid");
+                    progress.setString(2, String.valueOf(last[0]));
+                    progress.executeUpdate();
+                });
+
+                if (rows[0] == 0) {
+                    break;
+                }
+
+                lastRowId = last[0];
+                copied += rows[0];
+            }
+        }
+
+        logger.at(Level.INFO).log("Copied " + copied + " rows of " + dbFile.getFileName() + " to binary UUID keys");
+    }
+
+    /**
+     * Reads a TEXT uuid of the pre-BLOB schema. A malformed one stops the migration, naming its row, rather
+     * than dropping that account's balance.
+     */
+    private static UUID legacyUUID(long rowId, String uuid) throws SQLException {
+        try {
+            return UUID.fromString(uuid);
+        } catch (IllegalArgumentException e) {
+            throw new SQLException("Malformed UUID '" + uuid + "' in row " + rowId + " of balances, fix or delete the row and restart", e);
+        }
+    }
+
+    /**
+     * Replaces {@code balances} with the fully copied {@code balances_blob} and recreates its indexes.
+     */
+    private void swapToBlobKeys(Statement st) throws SQLException {
+        st.executeUpdate("DROP TABLE balances;");
+        st.executeUpdate("ALTER TABLE balances_blob RENAME TO balances;");
+        st.executeUpdate("CREATE INDEX idx_balances_balance ON balances(balance DESC);");
+        st.executeUpdate("CREATE UNIQUE INDEX idx_balances_name_lower ON balances(name_lower);");
+        st.executeUpdate("DELETE FROM meta WHERE key = 'blob_migration_rowid';");
+    }
+
+    /**
+     * Rescales every balance when {@code currency.fraction_digits} differs from the digits the database was
+     * written with. Reducing the digits rounds half away from zero. Must run on the writer thread.
+     */
+    private void rescale() throws SQLException {
+        var digits = Money.fractionDigits();
+        int stored;
+
+        var select = writer.prepare(SELECT_META);
+        select.setString(1, "fraction_digits");
+
+        try (var rs = select.executeQuery()) {
+            stored = rs.next() ? Integer.parseInt(rs.getString(1)) : digits;
+        }
+
+        if (stored == digits) {
+            return;
+        }
+
+        var factor = 1L;
+
+        for (var i = Math.min(stored, digits); i < Math.max(stored, digits); i++) {
+            factor *= 10;
+        }
+
+        var update = digits > stored
+            ? "UPDATE balances SET balance = balance * " + factor
+            : "UPDATE balances SET balance = CASE WHEN balance >= 0 THEN (balance + " + factor / 2 + ") / " + factor + " ELSE (balance - " + factor / 2 + ") / " + factor + " END";
+
+        transaction(st -> {
+            st.executeUpdate(update);
+
+            var ps = writer.prepare(SET_META);
+            ps.setString(1, "fraction_digits");
+            ps.setString(2, String.valueOf(digits));
+            ps.executeUpdate();
+        });
+
+        logger.at(Level.INFO).log("Rescaled balances in " + dbFile.getFileName() + " from " + stored + " to " + digits + " fraction digits");
+    }
+
+    /**
+     * Frees a name held by another account so the unique name index accepts it for {@code uuid}.
+     * Must run on the writer thread.
+     */
+    private void releaseName(UUID uuid, String name) throws SQLException {
+        if (name == null) {
+            return;
+        }
+
+        var ps = writer.prepare(RELEASE_NAME);
+        ps.setString(1, Storage.normalizeName(name));
+        ps.setBytes(2, toBytes(uuid));
+        ps.executeUpdate();
+    }
+
+    @Override
+    public Row getRow(UUID uuid) throws SQLException {
+        return read(Operation.GET_ROW_BY_UUID, (db, event) -> {
+            var ps = db.prepare(SELECT_BY_UUID);
+            ps.setBytes(1, toBytes(uuid));
+
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    setRows(event, 1);
+                    return new Row(toUUID(rs.getBytes(1)), rs.getString(2), rs.getLong(3));
+                }
+            }
+
+            return null;
+        });
+    }
+
+    @Override
+    public Row getRow(String name) throws SQLException {
+        return read(Operation.GET_ROW_BY_NAME, (db, event) -> {
+            var ps = db.prepare(SELECT_BY_NAME);
+            ps.setString(1, Storage.normalizeName(name));
+
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    setRows(event, 1);
+                    return new Row(toUUID(rs.getBytes(1)), rs.getString(2), rs.getLong(3));
+                }
+            }
+
+            return null;
+        });
+    }
+
+    @Override
+    public void saveAll(Collection<Row> rows) throws SQLException {
+        call(Operation.SAVE_ALL, event -> {
+            var connection = writer.connection();
+            var auto = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+
+            try {
+                var ps = writer.prepare(SET_BALANCE);
+                var now = System.currentTimeMillis();
+
+                for (var row : rows) {
+                    releaseName(row.uuid(), row.name());
+
+                    ps.setBytes(1, toBytes(row.uuid()));
+                    ps.setString(2, row.name());
+                    ps.setLong(3, row.balance());
+                    ps.setLong(4, now);
+                    ps.setString(5, Storage.normalizeName(row.name()));
+                    ps.executeUpdate();
+                }
+
+                connection.commit();
+                setRows(event, rows.size());
+            } catch (SQLException e) {
+                try {
+                    connection.rollback();
+                    setRolledBack(event);
+                } catch (SQLException ignore) {}
+
+                throw e;
+            } finally {
+                try {
+                    connection.setAutoCommit(auto);
+                } catch (SQLException ignore) {}
+            }
+
+            return null;
+        });
+    }
+
+    public boolean exists(String name) throws SQLException {
+        return read(Operation.EXISTS, (db, event) -> {
+            var ps = db.prepare(EXISTS_BY_NAME);
+            ps.setString(1, Storage.normalizeName(name));
+
+            try (var rs = ps.executeQuery()) {
+                var found = rs.next();
+                setRows(event, found ? 1 : 0);
+                return found;
+            }
+        });
+    }
+
+    public List<Row> getTop(int limit, int offset) throws SQLException {
+        return read(Operation.GET_TOP, (db, event) -> {
+            ArrayList<Row> out = new ArrayList<>();
+
+            var ps = db.prepare(SELECT_TOP);
+            ps.setInt(1, limit);
+            ps.setInt(2, offset);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    out.add(new Row(toUUID(rs.getBytes(1)), rs.getString(2), rs.getLong(3)));
+                }
+            }
+
+            setRows(event, out.size());
+            return out;
+        });
+    }
+
+    @Override
+    public long totalBalance() throws SQLException {
+        return read(Operation.TOTAL_BALANCE, (db, event) -> {
+            try (var rs = db.prepare(TOTAL_BALANCE).executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        });
+    }
+
+    @Override
+    public int countRows() throws SQLException {
+        return read(Operation.COUNT_ROWS, (db, event) -> {
+            try (var rs = db.prepare(COUNT_ROWS).executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        });
+    }
+
+    /**
+     * Streams every row to {@code consumer} on a read connection, without materializing the table.
+     */
+    @Override
+    public void forEachRow(Consumer<Row> consumer) throws SQLException {
+        read(Operation.FOR_EACH_ROW, (db, event) -> {
+            var rows = 0;
+
+            try (ResultSet rs = db.prepare(SELECT_ALL).executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(new Row(toUUID(rs.getBytes(1)), rs.getString(2), rs.getLong(3)));
+                    rows++;
+                }
+            } finally {
+                setRows(event, rows);
+            }
+
+            return null;
+        });
+    }
+
+    @Override
+    public List<Row> getRowsAfter(UUID after, int limit) throws SQLException {
+        return read(Operation.GET_ROWS_AFTER, (db, event) -> {
+            var out = new ArrayList<Row>(limit);
+            var ps = db.prepare(after == null ? SELECT_FIRST : SELECT_AFTER);
+            var index = 1;
+
+            if (after != null) {
+                ps.setBytes(index++, toBytes(after));
+            }
+
+            ps.setInt(index, limit);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    out.add(new Row(toUUID(rs.getBytes(1)), rs.getString(2), rs.getLong(3)));
+                }
+            }
+
+            setRows(event, out.size());
+            return out;
+        });
+    }
+
+    /**
+     * Reads the chunk's keys and old balances, then changes the whole key range with a single UPDATE, in one
+     * transaction on the writer.
+     */
+    @Override
+    public List<Row> adjustAfter(UUID after, int limit, Adjustment adjustment, long amount) throws SQLException {
+        return call(Operation.ADJUST_AFTER, event -> {
+            var connection = writer.connection();
+            var auto = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+
+            try {
+                var rows = new ArrayList<Row>(limit);
+                var select = writer.prepare(after == null ? SELECT_FIRST : SELECT_AFTER);
+                var index = 1;
+
+                if (after != null) {
+                    select.setBytes(index++, toBytes(after));
+                }
+
+                select.setInt(index, limit);
+
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        rows.add(new Row(toUUID(rs.getBytes(1)), rs.getString(2), rs.getLong(3)));
+                    }
+                }
+
+                if (!rows.isEmpty()) {
+                    var ps = writer.prepare(switch (adjustment) {
+                        case GIVE -> ADJUST_GIVE;
+                        case TAKE -> ADJUST_TAKE;
+                        case SET -> ADJUST_SET;
+                    });
+                    ps.setLong(1, amount);
+                    ps.setLong(2, System.currentTimeMillis());
+                    ps.setBytes(3, toBytes(rows.get(0).uuid()));
+                    ps.setBytes(4, toBytes(rows.get(rows.size() - 1).uuid()));
+
+                    if (adjustment != Adjustment.SET) {
+                        ps.setLong(5, adjustment == Adjustment.GIVE ? Long.MAX_VALUE - amount : amount);
+                    }
+
+                    setRows(event, ps.executeUpdate());
+                }
+
+                connection.commit();
+                return rows;
+            } catch (SQLException e) {
+                try {
+                    connection.rollback();
+                    setRolledBack(event);
+                } catch (SQLException ignore) {}
+
+                throw e;
+            } finally {
+                try {
+                    connection.setAutoCommit(auto);
+                } catch (SQLException ignore) {}
+            }
+        });
+    }
+
+    /**
+     * Gets the accounts from {@code first} to {@code last} in {@link Storage#UUID_ORDER}, inclusive, whose
+     * balance was last written before {@code before}, in epoch milliseconds. Writes by
+     * {@link #updateBalances} do not count.
+     */
+    public Set<UUID> getIdle(UUID first, UUID last, long before) throws SQLException {
+        return read(Operation.GET_IDLE, (db, event) -> {
+            var out = new HashSet<UUID>();
+            var ps = db.prepare(SELECT_IDLE);
+            ps.setBytes(1, toBytes(first));
+            ps.setBytes(2, toBytes(last));
+            ps.setLong(3, before);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    out.add(toUUID(rs.getBytes(1)));
+                }
+            }
+
+            setRows(event, out.size());
+            return out;
+        });
+    }
+
+    /**
+     * Writes new balances for existing rows and sets {@code meta} values in one transaction, so a checkpoint
+     * stored in {@code meta} always matches the balances. Unlike {@link #saveAll}, names and
+     * {@code last_updated} are left alone. A null meta value removes the key.
+     */
+    public void updateBalances(Collection<Row> rows, Map<String, String> meta) throws SQLException {
+        call(Operation.UPDATE_BALANCES, event -> {
+            var connection = writer.connection();
+            var auto = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+
+            try {
+                var ps = writer.prepare(UPDATE_BALANCE);
+
+                for (var row : rows) {
+                    ps.setLong(1, row.balance());
+                    ps.setBytes(2, toBytes(row.uuid()));
+                    addRows(event, ps.executeUpdate());
+                }
+
+                writeMeta(meta);
+                connection.commit();
+            } catch (SQLException e) {
+                try {
+                    connection.rollback();
+                    setRolledBack(event);
+                } catch (SQLException ignore) {}
+
+                throw e;
+            } finally {
+                try {
+                    connection.setAutoCommit(auto);
+                } catch (SQLException ignore) {}
+            }
+
+            return null;
+        });
+    }
+
+    /**
+     * Gets a value from the {@code meta} table, or null if it is not set.
+     */
+    public String getMeta(String key) throws SQLException {
+        return read(Operation.GET_META, (db, event) -> {
+            var ps = db.prepare(SELECT_META);
+            ps.setString(1, key);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                var found = rs.next();
+                setRows(event, found ? 1 : 0);
+                return found ? rs.getString(1) : null;
+            }
+        });
+    }
+
+    /**
+     * Sets {@code meta} values in one transaction. A null value removes the key.
+     */
+    public void setMeta(Map<String, String> meta) throws SQLException {
+        call(Operation.SET_META, event -> {
+            var connection = writer.connection();
+            var auto = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+
+            try {
+                writeMeta(meta);
+                connection.commit();
+                setRows(event, meta.size());
+            } catch (SQLException e) {
+                try {
+                    connection.rollback();
+                    setRolledBack(event);
+                } catch (SQLException ignore) {}
+
+                throw e;
+            } finally {
+                try {
+                    connection.setAutoCommit(auto);
+                } catch (SQLException ignore) {}
+            }
+
+            return null;
+        });
+    }
+
+    /**
+     * Writes {@code meta} values. Must run on the writer thread.
+     */
+    private void writeMeta(Map<String, String> meta) throws SQLException {
+        for (var entry : meta.entrySet()) {
+            if (entry.getValue() == null) {
+                var ps = writer.prepare(DELETE_META);
+                ps.setString(1, entry.getKey());
+                ps.executeUpdate();
+            } else {
+                var ps = writer.prepare(SET_META);
+                ps.setString(1, entry.getKey());
+                ps.setString(2, entry.getValue());
+                ps.executeUpdate();
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,52 @@
+package me.clicker.economy.storage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A connection together with the prepared statements compiled on it.
+ *
+ * <p>Each distinct SQL string is compiled once and reused for the lifetime of the connection.
+ * Not thread-safe; callers must confine an instance to one thread at a time.</p>
+ */
+final class StatementCache implements AutoCloseable {
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+    StatementCache(Connection connection) {
+        this.connection = connection;
+    }
+
+    Connection connection() {
+        return connection;
+    }
+
+    PreparedStatement prepare(String sql) throws SQLException {
+        var ps = statements.get(sql);
+
+        if (ps == null) {
+            ps = connection.prepareStatement(sql);
+            statements.put(sql, ps);
+        }
+
+        return ps;
+    }
+
+    @Override
+    public void close() {
+        for (var ps : statements.values()) {
+            try {
+                ps.close();
+            } catch (SQLException ignored) {}
+        }
+
+        statements.clear();
+
+        try {
+            connection.close();
+        } catch (SQLException ignored) {}
+    }
+}
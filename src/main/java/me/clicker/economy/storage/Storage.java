@@ -0,0 +1,107 @@
+package me.clicker.economy.storage;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Durable home of the balance table, behind {@link AccountCache}.
+ *
+ * <p>The cache owns all balance logic, so a backend only loads rows and persists batches of them. The
+ * backend is chosen by {@code storage.type} in config.yml.</p>
+ */
+public interface Storage {
+    record Row(UUID uuid, String name, long balance) {}
+    record TakeResult(boolean success, long balance, Reason reason) {
+        public enum Reason {
+            SUCCESS,
+            NOT_ENOUGH,
+            NOT_FOUND
+        }
+    }
+
+    /**
+     * A change applied to many accounts at once by {@link #adjustAfter}.
+     */
+    enum Adjustment {
+        GIVE,
+        TAKE,
+        SET;
+
+        /**
+         * Checks whether the change applies to an account holding {@code balance}: a take needs enough
+         * money, and a give must not overflow.
+         */
+        public boolean appliesTo(long balance, long amount) {
+            return switch (this) {
+                case GIVE -> balance <= Long.MAX_VALUE - amount;
+                case TAKE -> balance >= amount;
+                case SET -> true;
+            };
+        }
+
+        public long apply(long balance, long amount) {
+            return switch (this) {
+                case GIVE -> balance + amount;
+                case TAKE -> balance - amount;
+                case SET -> amount;
+            };
+        }
+    }
+
+    /**
+     * Orders UUIDs by their 16 big-endian bytes, unsigned, which is how SQLite orders the primary key.
+     */
+    Comparator<UUID> UUID_ORDER = Comparator.comparing(UUID::getMostSignificantBits, Long::compareUnsigned).thenComparing(UUID::getLeastSignificantBits, Long::compareUnsigned);
+
+    /**
+     * Normalizes a player name for case-insensitive lookups.
+     */
+    static String normalizeName(String name) {
+        return name == null ? null : name.toLowerCase(Locale.ROOT);
+    }
+
+    void init();
+
+    void shutdown();
+
+    Row getRow(UUID uuid) throws SQLException;
+
+    /**
+     * Gets the account currently holding a name, compared case-insensitively.
+     */
+    Row getRow(String name) throws SQLException;
+
+    /**
+     * Writes rows atomically: after a crash either all of them or none are present. A row with a null
+     * name keeps the stored name, and a row with a name takes it from any other account holding it.
+     */
+    void saveAll(Collection<Row> rows) throws SQLException;
+
+    long totalBalance() throws SQLException;
+
+    int countRows() throws SQLException;
+
+    /**
+     * Streams every row to {@code consumer} without materializing the table.
+     */
+    void forEachRow(Consumer<Row> consumer) throws SQLException;
+
+    /**
+     * Gets up to {@code limit} rows following {@code after} in {@link #UUID_ORDER}, or the first rows if it
+     * is null. Each call is a short read seeking straight to the key, so the table can be walked a page at a
+     * time in linear total work without holding anything open between pages.
+     */
+    List<Row> getRowsAfter(UUID after, int limit) throws SQLException;
+
+    /**
+     * Applies {@code adjustment} to the {@code limit} rows following {@code after} in {@link #UUID_ORDER}, in
+     * one transaction, and returns those rows as they were before it. Rows it does not apply to are left
+     * unchanged.
+     */
+    List<Row> adjustAfter(UUID after, int limit, Adjustment adjustment, long amount) throws SQLException;
+}
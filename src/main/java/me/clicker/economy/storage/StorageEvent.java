@@ -0,0 +1,30 @@
+package me.clicker.economy.storage;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A Flight Recorder event for one {@link SQLiteStorage} operation, including the wait for a connection or
+ * for the writer thread. Only operations over 1 ms are recorded unless a recording's settings say otherwise.
+ */
+@Name("me.clicker.economy.Storage")
+@Label("Economy Storage")
+@Category("Economy")
+@Description("A balance read or write in the economy's SQLite database")
+@StackTrace(false)
+@Threshold("1 ms")
+final class StorageEvent extends jdk.jfr.Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Rows")
+    @Description("Rows read or written")
+    int rows;
+
+    @Label("Rolled Back")
+    boolean rolledBack;
+}
@@ -0,0 +1,169 @@
+package me.clicker.economy;
+
+import me.clicker.economy.config.Config;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks {@link MoneyParser#parse} against the original parser, and {@link MoneyParser#parseMinor} against
+ * the {@code double} API's rounding, over a fixed set of edge cases and seeded random input.
+ */
+class MoneyParserTest {
+    private static final String ALPHABET = "0123456789012345678901234567890.,.,- \t$kKmMbBtTeE+dfxNaI";
+    private static final String[] SUFFIXES = {"", "k", "m", "b", "t"};
+    private static final int RANDOM_INPUTS = 200_000;
+
+    private String symbol;
+    private int fractionDigits;
+
+    @BeforeEach
+    void setUp() {
+        symbol = Config.currency_symbol;
+        fractionDigits = Config.currency_fraction_digits;
+        Config.currency_symbol = "$";
+        Config.currency_fraction_digits = 2;
+    }
+
+    @AfterEach
+    void tearDown() {
+        Config.currency_symbol = symbol;
+        Config.currency_fraction_digits = fractionDigits;
+    }
+
+    @Test
+    void parseMatchesParseSlowOnEdgeCases() {
+        var inputs = new String[] {
+            null, "", " ", "-", "$", "-$", "k", "$k", "- $ k", ".", "-.", ".k", ",", ",,", "0", "-0", "00.00", ".5", "5.",
+            "1,234.56", " 1,234.56 ", "-$1,234.56", "- $ 1,2,3 k", "1 000", "1. 5", "1..5", "1.2.3", "$$1", "1$",
+            "12.5k", "12.5 K", "3m", "1.5b", "2t", "1kk", "k1", "1e3", "1.5e-3k", "-1E10", "Infinity", "NaN", "0x1p3",
+            "1d", "1f", "+1", "--1", "123456789012345", "1234567890123456", "0.000000000000001", "0.0000000000000001",
+            "000000000000000000001", "999999999999999t", "4.35", "0.1", "0.3", "1.005", "9007199254740993"
+        };
+
+        for (var input : inputs) {
+            assertSameParse(input);
+        }
+    }
+
+    @Test
+    void parseMatchesParseSlowOnRandomInput() {
+        var random = new Random(42);
+        var builder = new StringBuilder();
+
+        for (var i = 0; i < RANDOM_INPUTS; i++) {
+            builder.setLength(0);
+
+            for (var length = random.nextInt(14); length > 0; length--) {
+                builder.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+
+            assertSameParse(builder.toString());
+            assertSameParse(amount(random));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 2, 3})
+    void parseMinorMatchesDoubleApi(int digits) {
+        Config.currency_fraction_digits = digits;
+        var random = new Random(digits);
+        var builder = new StringBuilder();
+
+        var inputs = new String[] {
+            "1.005", "0.125", "-0.125", "2.5", "-2.5", "0.1", "4.35", "1,234.565", "11258999068426.23", "11258999068426.25",
+            "-11258999068425.99", "9999999999999.99", "1125899906842.6k", "999999999.999999", "92233720368547758.07", "1e3"
+        };
+
+        for (var input : inputs) {
+            assertSameMinor(input);
+        }
+
+        for (var i = 0; i < RANDOM_INPUTS; i++) {
+            builder.setLength(0);
+
+            for (var length = random.nextInt(14); length > 0; length--) {
+                builder.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+
+            assertSameMinor(builder.toString());
+            assertSameMinor(amount(random));
+        }
+    }
+
+    @Test
+    void parseMinorRoundsLikeDoubleApi() {
+        // The double nearest 1.005 is just below it, so this is not a tie.
+        assertEquals(100, MoneyParser.parseMinor("1.005"));
+        assertEquals(13, MoneyParser.parseMinor("0.125"));
+        assertEquals(-12, MoneyParser.parseMinor("-0.125"));
+        assertEquals(0, MoneyParser.parseMinor("0.004"));
+        assertEquals(-1, MoneyParser.parseMinor("-0.006"));
+        assertEquals(123_450, MoneyParser.parseMinor("$1.2345k"));
+
+        Config.currency_fraction_digits = 0;
+        assertEquals(3, MoneyParser.parseMinor("2.5"));
+        assertEquals(-2, MoneyParser.parseMinor("-2.5"));
+    }
+
+    @Test
+    void parseMinorRejectsWhatDoubleApiCannotStore() {
+        assertThrows(NumberFormatException.class, () -> MoneyParser.parseMinor("1e20"));
+        assertThrows(NumberFormatException.class, () -> MoneyParser.parseMinor("999999999999999t"));
+        assertThrows(NumberFormatException.class, () -> MoneyParser.parseMinor("1.2.3"));
+    }
+
+    /**
+     * Checks that a command parsing {@code input} moves what {@code Money.toMinor(parseFormatted(input))} would.
+     */
+    private static void assertSameMinor(String input) {
+        long expected;
+
+        try {
+            expected = Money.toMinor(MoneyParser.parse(input));
+        } catch (NumberFormatException | ArithmeticException e) {
+            assertThrows(NumberFormatException.class, () -> MoneyParser.parseMinor(input), input);
+            return;
+        }
+
+        assertEquals(expected, MoneyParser.parseMinor(input), input);
+    }
+
+    private static void assertSameParse(String input) {
+        Double expected;
+
+        try {
+            expected = MoneyParser.parseSlow(input);
+        } catch (NumberFormatException e) {
+            assertThrows(NumberFormatException.class, () -> MoneyParser.parse(input), input);
+            return;
+        }
+
+        assertEquals(expected, MoneyParser.parse(input), input);
+    }
+
+    /**
+     * A random well-formed amount in one of the ways players type it.
+     */
+    private static String amount(Random random) {
+        var whole = random.nextInt(3) == 0 ? 0 : (long) (Math.pow(10, random.nextInt(14)) * random.nextDouble());
+        var fraction = random.nextInt(8);
+        var fractionValue = fraction == 0 ? 0 : (long) (Math.pow(10, fraction) * random.nextDouble());
+        var number = random.nextBoolean() ? String.format(Locale.ROOT, "%,d", whole) : Long.toString(whole);
+
+        if (fraction > 0) {
+            number += "." + String.format("%0" + fraction + "d", fractionValue);
+        }
+
+        var input = (random.nextBoolean() ? "-" : "") + (random.nextBoolean() ? "$" : "") + (random.nextBoolean() ? " " : "") + number + (random.nextBoolean() ? " " : "") + SUFFIXES[random.nextInt(SUFFIXES.length)];
+        return random.nextBoolean() ? input.toUpperCase() : input;
+    }
+}